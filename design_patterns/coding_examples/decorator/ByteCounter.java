@@ -0,0 +1,32 @@
+//Counts the bytes and lines that pass through it, without changing them.
+public class ByteCounter implements ByteTransform {
+
+    private long bytes;
+    private long lines;
+
+    @Override
+    public int apply(byte[] buf, int off, int len) {
+        bytes += len;
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            if (buf[i] == '\n') {
+                lines++;
+            }
+        }
+        return len;
+    }
+
+    //for counters folded into a TableTransform
+    void add(long bytes, long lines) {
+        this.bytes += bytes;
+        this.lines += lines;
+    }
+
+    public long bytes() {
+        return bytes;
+    }
+
+    public long lines() {
+        return lines;
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+//A transform applied to a block of bytes in place, the building block of
+//TransformInputStream.
+//
+//Stacking FilterInputStreams puts a virtual read() call and often a buffer copy in
+//every layer. Transforms are combined with andThen instead. The result works on the
+//buffer of a single TransformInputStream, so a stack of them costs one read per
+//buffer fill. Per-byte transforms (map, filter, lowerCase) are also fused: a run of
+//them is folded into one 256-entry table and applied in a single loop.
+public interface ByteTransform {
+
+    //Transforms buf[off, off+len) in place and returns the new length. It may be
+    //shorter when bytes are dropped.
+    int apply(byte[] buf, int off, int len);
+
+    default ByteTransform andThen(ByteTransform next) {
+        return FusedTransform.of(this, next);
+    }
+
+    //ASCII lowercasing. Bytes of multi-byte UTF-8 sequences are never in 'A'..'Z',
+    //so they pass through unchanged; LowerCaseInputStream lowercases all of Unicode.
+    static ByteTransform lowerCase() {
+        return map(b -> b >= 'A' && b <= 'Z' ? b | 0x20 : b);
+    }
+
+    //Replaces each byte b (0..255) with f(b).
+    static ByteTransform map(IntUnaryOperator f) {
+        return TableTransform.map(f);
+    }
+
+    //Replaces every byte found in from with the byte at the same position in to,
+    //like tr(1). Each char stands for one byte, so both must be in 0..255.
+    static ByteTransform translate(String from, String to) {
+        if (from.length() != to.length()) {
+            throw new IllegalArgumentException("from and to must have the same length");
+        }
+        for (int i = 0; i < from.length(); i++) {
+            if (from.charAt(i) > 0xFF || to.charAt(i) > 0xFF) {
+                throw new IllegalArgumentException("not a byte at position " + i + ": "
+                        + (int) from.charAt(i) + " -> " + (int) to.charAt(i));
+            }
+        }
+        return map(b -> {
+            int i = from.indexOf(b);
+            return i < 0 ? b : to.charAt(i);
+        });
+    }
+
+    //Keeps only the bytes b (0..255) for which keep.test(b) is true.
+    static ByteTransform filter(IntPredicate keep) {
+        return TableTransform.filter(keep);
+    }
+
+    //Counts the bytes and lines that reach this point of the chain.
+    static ByteCounter counter() {
+        return new ByteCounter();
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+//Reads the same in-memory text through 1 to 8 transforms, stacked two ways:
+//  unfused - one TransformInputStream per transform, each over a BufferedInputStream,
+//            the way decorators are usually stacked
+//  fused   - one TransformInputStream running all of them chained with andThen
+//
+//  java FusedDecoratorBenchmark [size in MB]
+public class FusedDecoratorBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int mb = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        byte[] data = sample(mb << 20);
+
+        System.out.printf("%-6s %12s %12s%n", "depth", "unfused", "fused");
+        for (int depth = 1; depth <= 8; depth++) {
+            long[] unfused = run(data, depth, false);
+            long[] fused = run(data, depth, true);
+            if (unfused[1] != fused[1]) {
+                throw new AssertionError("fused and unfused output differ at depth " + depth);
+            }
+            System.out.printf("%-6d %7.0f MB/s %7.0f MB/s%n", depth, mbPerSec(data, unfused[0]), mbPerSec(data, fused[0]));
+        }
+    }
+
+    //returns {best time in ns, checksum of the output}
+    private static long[] run(byte[] data, int depth, boolean fused) throws IOException {
+        long best = Long.MAX_VALUE, checksum = 0;
+        for (int i = 0; i < 5; i++) {
+            List<ByteTransform> transforms = transforms(depth);
+            InputStream in = new ByteArrayInputStream(data);
+            if (fused) {
+                ByteTransform chain = transforms.get(0);
+                for (ByteTransform t : transforms.subList(1, transforms.size())) {
+                    chain = chain.andThen(t);
+                }
+                in = new TransformInputStream(in, chain);
+            } else {
+                for (ByteTransform t : transforms) {
+                    in = new TransformInputStream(new BufferedInputStream(in), t);
+                }
+            }
+            long start = System.nanoTime();
+            checksum = drain(in);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return new long[] {best, checksum};
+    }
+
+    //the stages cycle through the four kinds of transform
+    private static List<ByteTransform> transforms(int depth) {
+        List<ByteTransform> transforms = new ArrayList<>();
+        for (int i = 0; i < depth; i++) {
+            switch (i % 4) {
+                case 0: transforms.add(ByteTransform.lowerCase()); break;
+                case 1: transforms.add(ByteTransform.filter(b -> b != '\r')); break;
+                case 2: transforms.add(ByteTransform.counter()); break;
+                default: transforms.add(ByteTransform.translate("aeiou", "AEIOU")); break;
+            }
+        }
+        return transforms;
+    }
+
+    //a cheap checksum (byte count and byte sum) so that reading dominates the timing
+    private static long drain(InputStream in) throws IOException {
+        long count = 0;
+        int sum = 0;
+        byte[] buf = new byte[1 << 16];
+        int n;
+        while ((n = in.read(buf)) >= 0) {
+            count += n;
+            for (int i = 0; i < n; i++) {
+                sum += buf[i];
+            }
+        }
+        return count * 31 + sum;
+    }
+
+    private static double mbPerSec(byte[] data, long nanos) {
+        return data.length / 1e6 / (nanos / 1e9);
+    }
+
+    private static byte[] sample(int size) {
+        byte[] line = "The Decorator Pattern attaches additional responsibilities to an Object dynamically.\r\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = line[i % line.length];
+        }
+        return data;
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.ArrayList;
+import java.util.List;
+
+//A chain of transforms run one after another over the same buffer. Adjacent table
+//transforms and counters are merged when the chain is built, so each run of them
+//takes one pass; a chain of the built-in transforms becomes a single table.
+class FusedTransform implements ByteTransform {
+
+    private final ByteTransform[] stages;
+
+    private FusedTransform(List<ByteTransform> stages) {
+        this.stages = stages.toArray(new ByteTransform[0]);
+    }
+
+    static ByteTransform of(ByteTransform first, ByteTransform second) {
+        List<ByteTransform> stages = new ArrayList<>();
+        add(stages, first);
+        add(stages, second);
+        return stages.size() == 1 ? stages.get(0) : new FusedTransform(stages);
+    }
+
+    private static void add(List<ByteTransform> stages, ByteTransform t) {
+        if (t instanceof FusedTransform) {
+            for (ByteTransform stage : ((FusedTransform) t).stages) {
+                add(stages, stage);
+            }
+            return;
+        }
+        if (t instanceof ByteCounter) {
+            t = TableTransform.counting((ByteCounter) t);
+        }
+        int last = stages.size() - 1;
+        if (t instanceof TableTransform && last >= 0 && stages.get(last) instanceof TableTransform) {
+            stages.set(last, ((TableTransform) stages.get(last)).then((TableTransform) t));
+        } else {
+            stages.add(t);
+        }
+    }
+
+    @Override
+    public int apply(byte[] buf, int off, int len) {
+        for (ByteTransform stage : stages) {
+            if (len == 0) {
+                break;
+            }
+            len = stage.apply(buf, off, len);
+        }
+        return len;
+    }
+}
@@ -0,0 +1,108 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+//One gzip member (RFC 1952) holding one block, as written by ParallelGzipOutputStream.
+//
+//Concatenated members are a valid gzip file; gzip, zcat and GZIPInputStream read them
+//as one stream. To let a reader find the members without inflating them first, the
+//header carries an extra field ("PZ", the same idea as BGZF's "BC") with the length
+//of the whole member. Readers that don't know the field skip it.
+//
+//  1f 8b 08 04 | mtime 0 | xfl 0 | os ff | xlen 8 | 'P' 'Z' 4 0 | member length (4)
+//  deflate data | crc32 (4) | uncompressed size (4)          all little-endian
+final class GzipMember {
+
+    static final int HEADER_SIZE = 20;
+    static final int TRAILER_SIZE = 8;
+
+    private GzipMember() {
+    }
+
+    static byte[] compress(byte[] data, int len, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, len);
+            deflater.finish();
+            //stored blocks are the worst case: a little over the input size
+            byte[] member = new byte[HEADER_SIZE + len + len / 1000 + 64 + TRAILER_SIZE];
+            int size = HEADER_SIZE;
+            while (!deflater.finished()) {
+                if (size == member.length - TRAILER_SIZE) {
+                    member = Arrays.copyOf(member, member.length * 2);
+                }
+                size += deflater.deflate(member, size, member.length - TRAILER_SIZE - size);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, len);
+            ByteBuffer buf = ByteBuffer.wrap(member).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(size, (int) crc.getValue());
+            buf.putInt(size + 4, len);
+            size += TRAILER_SIZE;
+            buf.put(new byte[] {0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 8, 0, 'P', 'Z', 4, 0});
+            buf.putInt(size);
+            return Arrays.copyOf(member, size);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    //Returns the member length from a header written by compress, or -1 if header
+    //is some other kind of gzip header.
+    static long memberLength(ByteBuffer header) {
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        if (header.remaining() < HEADER_SIZE
+                || header.getInt(0) != 0x04088b1f
+                || header.getShort(10) != 8
+                || header.getInt(12) != ('P' | 'Z' << 8 | 4 << 16)) {
+            return -1;
+        }
+        return header.getInt(16) & 0xFFFFFFFFL;
+    }
+
+    //Inflates a whole member and checks its CRC and size.
+    static byte[] decompress(ByteBuffer member) throws IOException {
+        member.order(ByteOrder.LITTLE_ENDIAN);
+        int end = member.limit();
+        int crc = member.getInt(end - TRAILER_SIZE);
+        int size = member.getInt(end - 4);
+        if (size < 0) {
+            throw new ZipException("corrupt gzip member");
+        }
+        byte[] data = new byte[size];
+        byte[] overflow = new byte[1];
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member.position(HEADER_SIZE).limit(end - TRAILER_SIZE));
+            int n = 0;
+            //the deflate stream must end exactly at size bytes; inflating into a spare
+            //byte after that catches a member that is longer than its trailer says
+            while (!inflater.finished() && n <= size) {
+                int r = n < size ? inflater.inflate(data, n, size - n) : inflater.inflate(overflow);
+                if (r == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            if (n != size || !inflater.finished()) {
+                throw new ZipException("corrupt gzip member");
+            }
+            CRC32 check = new CRC32();
+            check.update(data, 0, size);
+            if ((int) check.getValue() != crc) {
+                throw new ZipException("gzip member CRC mismatch");
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+}
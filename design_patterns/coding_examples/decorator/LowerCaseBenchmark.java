@@ -0,0 +1,105 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//Reads a generated file through several decorator chains and prints the throughput
+//of each next to a plain FileChannel read.
+//
+//  java LowerCaseBenchmark [size in MB]
+public class LowerCaseBenchmark {
+
+    interface Reader {
+        long readAll(Path file) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int mb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        Path file = Files.createTempFile("lowercase", ".txt");
+        try {
+            writeSample(file, mb << 20);
+            run("FileChannel (no lowercasing)", file, f -> drain(FileChannel.open(f, StandardOpenOption.READ)));
+            run("LowerCaseChannel", file,
+                    f -> drain(new LowerCaseChannel(FileChannel.open(f, StandardOpenOption.READ))));
+            run("LowerCaseInputStream", file, f -> drain(new LowerCaseInputStream(new FileInputStream(f.toFile()))));
+            run("per-byte Character.toLowerCase", file, f -> drain(new PerByteLowerCase(new FileInputStream(f.toFile()))));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void run(String name, Path file, Reader reader) throws IOException {
+        long size = Files.size(file);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 10; i++) {
+            long start = System.nanoTime();
+            reader.readAll(file);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        System.out.printf("%-32s %8.0f MB/s%n", name, size / 1e6 / (best / 1e9));
+    }
+
+    private static long drain(ReadableByteChannel channel) throws IOException {
+        long total = 0;
+        try (channel) {
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 16);
+            int n;
+            while ((n = channel.read(buf)) >= 0) {
+                total += n;
+                buf.clear();
+            }
+        }
+        return total;
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        long total = 0;
+        try (in) {
+            byte[] buf = new byte[1 << 16];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    //mostly ASCII prose with the odd accented word, like a typical text file
+    private static void writeSample(Path file, int size) throws IOException {
+        String line = "The Decorator Pattern attaches additional responsibilities to an Object "
+                + "dynamically, at the CAF\u00C9 across the street.\n";
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(size - size % bytes.length);
+        while (buf.hasRemaining()) {
+            buf.put(bytes);
+        }
+        buf.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        }
+    }
+
+    //the decorator as it was first written, for comparison
+    static class PerByteLowerCase extends java.io.FilterInputStream {
+        PerByteLowerCase(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = in.read(b, off, len);
+            for (int i = off; i < off + result; i++) {
+                b[i] = (byte) Character.toLowerCase((char) b[i]);
+            }
+            return result;
+        }
+    }
+}
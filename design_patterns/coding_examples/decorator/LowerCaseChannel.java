@@ -0,0 +1,61 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+//The same decorator for NIO: it wraps a ReadableByteChannel and lowercases what it
+//reads in the caller's buffer, direct buffers included, without copying it anywhere.
+//LowerCaseBenchmark compares it with a plain FileChannel read.
+public class LowerCaseChannel implements ReadableByteChannel {
+
+    private static final int MIN_IN_PLACE = 8;
+
+    private final ReadableByteChannel channel;
+    private final Utf8LowerCaser lowerCaser = new Utf8LowerCaser();
+    private final Utf8LowerCaser.ByteSource source;
+
+    public LowerCaseChannel(ReadableByteChannel channel) {
+        this.channel = channel;
+        this.source = (buf, off, len) -> channel.read(buf.duplicate().limit(off + len).position(off));
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        if (lowerCaser.hasSpill()) {
+            return lowerCaser.drainSpill(dst);
+        }
+        if (dst.remaining() < MIN_IN_PLACE) {
+            return lowerCaser.fillSpill(source) < 0 ? -1 : lowerCaser.drainSpill(dst);
+        }
+        //getLong/putLong don't care about byte order here, so use the cheaper one
+        //without changing the caller's buffer
+        ByteBuffer view = dst.duplicate().order(ByteOrder.nativeOrder());
+        int start = dst.position();
+        int end = lowerCaser.process(view, start, dst.remaining(), source);
+        if (end < 0) {
+            return -1;
+        }
+        if (end == start) {
+            return lowerCaser.drainSpill(dst);
+        }
+        dst.position(end);
+        return end - start;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -1,28 +1,93 @@
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
 
 //FilterInputSream is the abstract Decorator we're going to subclass
+//
+//The bytes are read straight into the caller's array and lowercased there, eight
+//ASCII bytes at a time, with a UTF-8 aware path for everything else (see
+//Utf8LowerCaser). Reads smaller than a UTF-8 sequence, read() included, are served
+//from a small internal buffer.
 public class LowerCaseInputStream extends FilterInputStream {
 
+    private static final int MIN_IN_PLACE = 8;
+
+    private final Utf8LowerCaser lowerCaser = new Utf8LowerCaser();
+    private final Utf8LowerCaser.ByteSource source = (buf, off, len) -> in.read(buf.array(), off, len);
+
+    //the caller usually passes the same array every time, so its wrapper is kept
+    private byte[] lastArray;
+    private ByteBuffer lastBuffer;
+
     public LowerCaseInputStream(InputStream inputStream) {
         super(inputStream);
     }
 
     @Override
     public int read() throws IOException {
-        int c = in.read();
-        return (c == -1? c : Character.toLowerCase((char)c));
+        if (!lowerCaser.hasSpill() && lowerCaser.fillSpill(source) < 0) {
+            return -1;
+        }
+        return lowerCaser.nextSpilled();
     }
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        
-        int result = in.read(b, off, len);
-        for(int i = off; i < off + result; i++) {
-            b[i] = (byte)Character.toLowerCase((char)b[i]);
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (lowerCaser.hasSpill()) {
+            return lowerCaser.drainSpill(b, off, len);
+        }
+        if (len < MIN_IN_PLACE) {
+            return lowerCaser.fillSpill(source) < 0 ? -1 : lowerCaser.drainSpill(b, off, len);
+        }
+        int end = lowerCaser.process(wrap(b), off, len, source);
+        if (end < 0) {
+            return -1;
+        }
+        if (end == off) {
+            //only a lowercased character that grew is ready
+            return lowerCaser.drainSpill(b, off, len);
+        }
+        return end - off;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        //skipping has to go through read so that carried bytes are accounted for
+        byte[] buf = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
         }
-        return result;
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        //only what is already lowercased is certain to be readable without blocking
+        return lowerCaser.spilled();
+    }
 
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    private ByteBuffer wrap(byte[] b) {
+        if (b != lastArray) {
+            lastArray = b;
+            lastBuffer = ByteBuffer.wrap(b).order(ByteOrder.nativeOrder());
+        }
+        return lastBuffer;
     }
 }
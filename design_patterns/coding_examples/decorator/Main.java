@@ -2,24 +2,61 @@ import java.io.BufferedInputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class Main {
     public static void main(String[] args)  throws IOException {
-        int c;
-        
+        String file = args.length > 0 ? args[0] : "coding_examples/decorator/test.txt";
+
         InputStream in = 
             new LowerCaseInputStream(
                 new BufferedInputStream(
-                    new FileInputStream("coding_examples/decorator/test.txt")
+                    new FileInputStream(file)
                 )
             );
 
-        while((c = in.read()) >= 0) {
-            System.out.print((char)c);
+        //read a block at a time instead of a byte at a time, and decode it as UTF-8
+        //rather than casting each byte to a char
+        byte[] buf = new byte[8192];
+        int n;
+        while((n = in.read(buf)) >= 0) {
+            System.out.print(new String(buf, 0, n, StandardCharsets.UTF_8));
         }
         in.close();
+        System.out.println();
 
+        //the NIO version of the same decorator
+        try (ReadableByteChannel channel =
+                new LowerCaseChannel(FileChannel.open(Path.of(file), StandardOpenOption.READ))) {
+            ByteBuffer direct = ByteBuffer.allocateDirect(8192);
+            while (channel.read(direct) >= 0) {
+                direct.flip();
+                System.out.print(StandardCharsets.UTF_8.decode(direct));
+                direct.clear();
+            }
+        }
+        System.out.println();
 
+        //several transforms fused into one decorator: one read, one pass over the bytes
+        ByteCounter counter = ByteTransform.counter();
+        InputStream fused =
+            new TransformInputStream(
+                new FileInputStream(file),
+                ByteTransform.lowerCase()
+                    .andThen(ByteTransform.filter(b -> b != '!'))
+                    .andThen(counter)
+            );
+        while((n = fused.read(buf)) >= 0) {
+            System.out.print(new String(buf, 0, n, StandardCharsets.UTF_8));
+        }
+        fused.close();
+        System.out.println();
+        System.out.println(counter.bytes() + " bytes, " + counter.lines() + " lines");
     }
     
 }
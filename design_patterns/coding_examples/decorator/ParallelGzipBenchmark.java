@@ -0,0 +1,86 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Compresses and decompresses the same generated file with the JDK's gzip streams and
+//with ParallelGzipOutputStream / ParallelGzipInputStream, and checks that every
+//combination gives back the original bytes.
+//
+//  java ParallelGzipBenchmark [size in MB] [threads]
+public class ParallelGzipBenchmark {
+
+    interface Compress {
+        OutputStream wrap(OutputStream out) throws IOException;
+    }
+
+    interface Decompress {
+        InputStream open(Path file) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int mb = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        byte[] data = sample(mb << 20);
+        Path jdk = Files.createTempFile("jdk", ".gz");
+        Path parallel = Files.createTempFile("parallel", ".gz");
+        try {
+            System.out.printf("%d MB, %d threads%n", mb, threads);
+            compress("GZIPOutputStream", data, jdk, out -> new GZIPOutputStream(out, 1 << 16));
+            compress("ParallelGzipOutputStream", data, parallel,
+                    out -> new ParallelGzipOutputStream(out, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, threads,
+                            Deflater.DEFAULT_COMPRESSION));
+
+            decompress("GZIPInputStream, parallel file", data, parallel,
+                    file -> new GZIPInputStream(Files.newInputStream(file), 1 << 16));
+            decompress("ParallelGzipInputStream, parallel file", data, parallel,
+                    file -> new ParallelGzipInputStream(file, threads));
+            decompress("ParallelGzipInputStream, JDK file", data, jdk,
+                    file -> new ParallelGzipInputStream(file, threads));
+        } finally {
+            Files.delete(jdk);
+            Files.delete(parallel);
+        }
+    }
+
+    private static void compress(String name, byte[] data, Path file, Compress compress) throws IOException {
+        long start = System.nanoTime();
+        try (OutputStream out = compress.wrap(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.write(data);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.printf("%-40s %7.0f MB/s   %,d bytes%n", name, data.length / 1e6 / (nanos / 1e9), Files.size(file));
+    }
+
+    private static void decompress(String name, byte[] data, Path file, Decompress decompress) throws IOException {
+        long start = System.nanoTime();
+        byte[] result;
+        try (InputStream in = decompress.open(file)) {
+            result = in.readAllBytes();
+        }
+        long nanos = System.nanoTime() - start;
+        if (!Arrays.equals(data, result)) {
+            throw new AssertionError(name + " returned different bytes");
+        }
+        System.out.printf("%-40s %7.0f MB/s%n", name, data.length / 1e6 / (nanos / 1e9));
+    }
+
+    //words drawn from a small vocabulary, so it compresses about as well as text
+    private static byte[] sample(int size) {
+        String[] words = ("the decorator pattern attaches additional responsibilities to an object dynamically "
+                + "decorators provide a flexible alternative to subclassing for extending functionality").split(" ");
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder(size + 100);
+        while (text.length() < size) {
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(20) == 0 ? '\n' : ' ');
+        }
+        return text.substring(0, size).getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+    }
+}
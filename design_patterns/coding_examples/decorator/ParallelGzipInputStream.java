@@ -0,0 +1,172 @@
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
+
+//Reads a gzip file, inflating its members on several threads.
+//
+//Members written by ParallelGzipOutputStream record their own length, so the reader
+//can hop from header to header and hand each member to the pool; each task reads
+//its member with a positional read and inflates it. The blocks come back in order.
+//
+//Any other gzip file still works: at the first member without a length, the rest
+//of the file is read by a plain GZIPInputStream on this thread.
+public class ParallelGzipInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long size;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private long nextMember;            //file position of the next member to schedule
+    private InputStream sequential;     //set once a member without a length is met
+    private final byte[] sequentialBuffer = new byte[1 << 16];
+
+    private byte[] current = new byte[0];
+    private int pos;
+    private boolean closed;
+
+    public ParallelGzipInputStream(Path file) throws IOException {
+        this(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGzipInputStream(Path file, int threads) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive");
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.size = channel.size();
+        this.maxInFlight = 2 * threads;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "gzip-inflate");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == current.length && !nextBlock()) {
+            return -1;
+        }
+        return current[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == current.length && !nextBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, current.length - pos);
+        System.arraycopy(current, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return current.length - pos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pool.shutdownNow();
+        if (sequential != null) {
+            sequential.close();
+        }
+        channel.close();
+    }
+
+    //Makes the next non-empty block current; false at the end of the file. Members
+    //can be empty (ParallelGzipOutputStream writes one for empty input), so those are
+    //skipped rather than handed to read() as a block with nothing in it.
+    private boolean nextBlock() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+        for (schedule(); !pending.isEmpty(); schedule()) {
+            current = take();
+            pos = 0;
+            if (current.length > 0) {
+                return true;
+            }
+        }
+        if (sequential == null && nextMember < size) {
+            sequential = new GZIPInputStream(Channels.newInputStream(channel.position(nextMember)), 1 << 16);
+        }
+        if (sequential != null) {
+            int n = sequential.readNBytes(sequentialBuffer, 0, sequentialBuffer.length);
+            if (n > 0) {
+                current = n == sequentialBuffer.length ? sequentialBuffer : Arrays.copyOf(sequentialBuffer, n);
+                pos = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Hands members to the pool until the window is full or a member without a length
+    //is found.
+    private void schedule() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(GzipMember.HEADER_SIZE);
+        while (sequential == null && pending.size() < maxInFlight && nextMember < size) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, nextMember + header.position()) > 0) {
+            }
+            header.flip();
+            long length = GzipMember.memberLength(header);
+            if (length < GzipMember.HEADER_SIZE + GzipMember.TRAILER_SIZE || nextMember + length > size) {
+                return;
+            }
+            long start = nextMember;
+            pending.add(pool.submit(() -> inflate(start, (int) length)));
+            nextMember += length;
+        }
+    }
+
+    private byte[] inflate(long start, int length) throws IOException {
+        ByteBuffer member = ByteBuffer.allocate(length);
+        while (member.hasRemaining()) {
+            if (channel.read(member, start + member.position()) < 0) {
+                throw new EOFException("truncated gzip member");
+            }
+        }
+        return GzipMember.decompress(member.flip());
+    }
+
+    private byte[] take() throws IOException {
+        try {
+            return pending.remove().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while inflating");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("inflating failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+//A gzip decorator that compresses on several threads, in the style of pigz.
+//
+//The written bytes are cut into fixed-size blocks. Each block is compressed on a
+//thread pool into its own gzip member (see GzipMember), and the members are written
+//in order. A multi-member file is ordinary gzip, so gzip -d, zcat and
+//GZIPInputStream all read it. The members are independent, which costs a little
+//compression compared to one long stream but lets ParallelGzipInputStream inflate
+//them in parallel too.
+//
+//At most two blocks per thread are in flight; write() waits for the oldest when
+//that limit is reached, which bounds memory.
+//
+//Closing a stream nothing was written to still writes one empty member, as
+//GZIPOutputStream does, since an empty file is not valid gzip.
+public class ParallelGzipOutputStream extends FilterOutputStream {
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private final int blockSize;
+    private final int level;
+    private final ExecutorService pool;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private byte[] block;
+    private int count;
+    private boolean closed;
+    private boolean wroteMember;
+
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE, Runtime.getRuntime().availableProcessors(), Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public ParallelGzipOutputStream(OutputStream out, int blockSize, int threads, int level) {
+        super(out);
+        if (blockSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("blockSize and threads must be positive");
+        }
+        if ((level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("level must be -1 (default) or 0 to 9: " + level);
+        }
+        this.blockSize = blockSize;
+        this.level = level;
+        this.maxInFlight = 2 * threads;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "gzip-compress");
+            t.setDaemon(true);
+            return t;
+        });
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == blockSize) {
+            submitBlock();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        Objects.checkFromIndexSize(off, len, b.length);
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize) {
+                submitBlock();
+            }
+        }
+    }
+
+    //Compresses what has been written so far and writes it out. Each flush ends a
+    //member early, so flushing often makes the output bigger.
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0) {
+            submitBlock();
+        }
+        while (!pending.isEmpty()) {
+            writeOldest();
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+            if (!wroteMember) {
+                out.write(GzipMember.compress(new byte[0], 0, level));
+            }
+        } finally {
+            closed = true;
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submitBlock() throws IOException {
+        byte[] data = block;
+        int len = count;
+        pending.add(pool.submit(() -> GzipMember.compress(data, len, level)));
+        block = new byte[blockSize];
+        count = 0;
+        while (pending.size() >= maxInFlight) {
+            writeOldest();
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        try {
+            out.write(pending.peek().get());
+            pending.remove();
+            wroteMember = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while compressing");
+        } catch (ExecutionException e) {
+            throw new IOException("compression failed", e.getCause());
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+}
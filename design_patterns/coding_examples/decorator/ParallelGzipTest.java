@@ -0,0 +1,97 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+//Round trips through ParallelGzipOutputStream and ParallelGzipInputStream that involve
+//empty gzip members: an empty stream, and empty members between non-empty ones, both
+//in members the reader inflates in parallel and in plain gzip members it reads on its
+//own thread. Each file is read back with read() and with read(byte[], int, int), and
+//both must give the original bytes and then -1.
+//
+//  java ParallelGzipTest
+public class ParallelGzipTest {
+
+    public static void main(String[] args) throws IOException {
+        byte[] hello = "hello, ".getBytes();
+        byte[] world = "world\n".getBytes();
+
+        check("empty stream", new byte[0], parallel(new byte[0]));
+        check("empty member in the middle", concat(hello, world),
+                parallel(hello), parallel(new byte[0]), parallel(world));
+        check("empty members at both ends", hello,
+                parallel(new byte[0]), parallel(hello), parallel(new byte[0]));
+        check("empty plain gzip member in the middle", concat(hello, world),
+                parallel(hello), plain(new byte[0]), plain(world));
+        check("only empty plain gzip members", new byte[0], plain(new byte[0]), plain(new byte[0]));
+        System.out.println("all checks passed");
+    }
+
+    private static void check(String name, byte[] expected, byte[]... members) throws IOException {
+        Path file = Files.createTempFile("parallel-gzip", ".gz");
+        try {
+            Files.write(file, concat(members));
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ParallelGzipInputStream in = new ParallelGzipInputStream(file, 2)) {
+                for (int b = in.read(); b >= 0; b = in.read()) {
+                    bytes.write(b);
+                }
+                if (in.read() != -1) {
+                    throw new AssertionError(name + ": read() after the end did not return -1");
+                }
+            }
+            verify(name + ", read()", expected, bytes.toByteArray());
+
+            bytes.reset();
+            byte[] buf = new byte[4];
+            try (ParallelGzipInputStream in = new ParallelGzipInputStream(file, 2)) {
+                for (int n = in.read(buf, 0, buf.length); n != -1; n = in.read(buf, 0, buf.length)) {
+                    if (n == 0) {
+                        throw new AssertionError(name + ": read(byte[], int, int) returned 0");
+                    }
+                    bytes.write(buf, 0, n);
+                }
+            }
+            verify(name + ", read(byte[], int, int)", expected, bytes.toByteArray());
+            System.out.println("ok: " + name);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static void verify(String name, byte[] expected, byte[] actual) {
+        if (!Arrays.equals(expected, actual)) {
+            throw new AssertionError(name + ": read back " + actual.length + " bytes, expected " + expected.length);
+        }
+    }
+
+    private static byte[] parallel(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bytes, ParallelGzipOutputStream.DEFAULT_BLOCK_SIZE, 2,
+                Deflater.DEFAULT_COMPRESSION)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] plain(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            bytes.write(part, 0, part.length);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,132 @@
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+//A per-byte transform stored as a lookup table: table[b] is the replacement for
+//byte b, or DROP to remove it. Two tables compose into one, which is how runs of
+//map, filter and lowerCase are fused.
+//
+//Counters fold in too. Within a fused table, what a counter sees is a function of
+//the input byte, so each counter keeps its own table of what byte b has become by
+//the time it reaches the counter. The pass then only builds a histogram of the
+//input bytes, and the counters are updated from it once per buffer.
+class TableTransform implements ByteTransform {
+
+    private static final short DROP = -1;
+
+    //a counter, and what each input byte looks like when it reaches it
+    private static final class Tap {
+        final ByteCounter counter;
+        final short[] seen;
+
+        Tap(ByteCounter counter, short[] seen) {
+            this.counter = counter;
+            this.seen = seen;
+        }
+    }
+
+    private final short[] table;
+    private final byte[] bytes;     //table without DROP entries, for the faster loop
+    private final boolean drops;
+    private final Tap[] taps;
+    private final int[] histogram;
+
+    private TableTransform(short[] table, Tap[] taps) {
+        this.table = table;
+        this.taps = taps;
+        this.histogram = taps.length > 0 ? new int[256] : null;
+        this.bytes = new byte[256];
+        boolean drops = false;
+        for (int b = 0; b < 256; b++) {
+            drops |= table[b] == DROP;
+            bytes[b] = (byte) table[b];
+        }
+        this.drops = drops;
+    }
+
+    static TableTransform map(IntUnaryOperator f) {
+        short[] table = new short[256];
+        for (int b = 0; b < 256; b++) {
+            table[b] = (short) (f.applyAsInt(b) & 0xFF);
+        }
+        return new TableTransform(table, new Tap[0]);
+    }
+
+    static TableTransform filter(IntPredicate keep) {
+        short[] table = new short[256];
+        for (int b = 0; b < 256; b++) {
+            table[b] = keep.test(b) ? (short) b : DROP;
+        }
+        return new TableTransform(table, new Tap[0]);
+    }
+
+    //A table that leaves the bytes alone and feeds them to counter.
+    static TableTransform counting(ByteCounter counter) {
+        short[] identity = map(b -> b).table;
+        return new TableTransform(identity, new Tap[] {new Tap(counter, identity)});
+    }
+
+    //This table followed by next, as a single table.
+    TableTransform then(TableTransform next) {
+        Tap[] taps = Arrays.copyOf(this.taps, this.taps.length + next.taps.length);
+        for (int i = 0; i < next.taps.length; i++) {
+            taps[this.taps.length + i] = new Tap(next.taps[i].counter, compose(this.table, next.taps[i].seen));
+        }
+        return new TableTransform(compose(this.table, next.table), taps);
+    }
+
+    private static short[] compose(short[] first, short[] second) {
+        short[] table = new short[256];
+        for (int b = 0; b < 256; b++) {
+            short t = first[b];
+            table[b] = t == DROP ? DROP : second[t];
+        }
+        return table;
+    }
+
+    @Override
+    public int apply(byte[] buf, int off, int len) {
+        int end = off + len;
+        int w = off;
+        if (taps.length == 0 && !drops) {
+            for (int i = off; i < end; i++) {
+                buf[i] = bytes[buf[i] & 0xFF];
+            }
+            w = end;
+        } else if (taps.length == 0) {
+            for (int i = off; i < end; i++) {
+                short t = table[buf[i] & 0xFF];
+                if (t != DROP) {
+                    buf[w++] = (byte) t;
+                }
+            }
+        } else {
+            for (int i = off; i < end; i++) {
+                int b = buf[i] & 0xFF;
+                histogram[b]++;
+                short t = table[b];
+                if (t != DROP) {
+                    buf[w++] = (byte) t;
+                }
+            }
+            count();
+        }
+        return w - off;
+    }
+
+    private void count() {
+        for (Tap tap : taps) {
+            long bytes = 0, lines = 0;
+            for (int b = 0; b < 256; b++) {
+                if (tap.seen[b] != DROP) {
+                    bytes += histogram[b];
+                    if (tap.seen[b] == '\n') {
+                        lines += histogram[b];
+                    }
+                }
+            }
+            tap.counter.add(bytes, lines);
+        }
+        Arrays.fill(histogram, 0);
+    }
+}
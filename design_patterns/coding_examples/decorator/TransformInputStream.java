@@ -0,0 +1,63 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+//A decorator that runs a ByteTransform (usually a chain built with andThen) over
+//each block it reads. The bytes are read straight into the caller's array and
+//transformed there, so a whole chain costs one read and no copies.
+public class TransformInputStream extends FilterInputStream {
+
+    private final ByteTransform transform;
+    private final byte[] single = new byte[1];
+
+    public TransformInputStream(InputStream inputStream, ByteTransform transform) {
+        super(inputStream);
+        this.transform = transform;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(single, 0, 1);
+        return n < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        while (true) {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                return -1;
+            }
+            n = transform.apply(b, off, n);
+            //a filter may drop everything that was read; read more rather than return 0
+            if (n > 0) {
+                return n;
+            }
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        //skipped bytes still have to go through the transform (counters, filters)
+        byte[] buf = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int r = read(buf, 0, (int) Math.min(buf.length, n - skipped));
+            if (r < 0) {
+                break;
+            }
+            skipped += r;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,270 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+// The lowercasing logic shared by LowerCaseInputStream and LowerCaseChannel.
+//
+// Bytes are lowercased in place. Runs of ASCII are handled eight bytes at a time.
+// A multi-byte UTF-8 sequence is decoded and lowercased with Character.toLowerCase(int).
+// Then it is encoded back. Malformed bytes are passed through unchanged.
+//
+// A few characters change their encoded length when lowercased. For example the
+// Kelvin sign (3 bytes) becomes 'k' (1 byte), and U+023A (2 bytes) becomes U+2C65
+// (3 bytes). Shrinking fits in place. Growing needs room the buffer doesn't have,
+// so processing stops there. The bytes not yet processed are kept in "carry" for
+// the next read. A sequence cut off at the end of a read is carried the same way.
+// "spill" holds lowercased bytes that are waiting to be handed out.
+class Utf8LowerCaser {
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ONES = 0x0101010101010101L;
+
+    private byte[] carry = new byte[16];
+    private int carryLen;
+
+    private final byte[] spill = new byte[64];
+    private int spillPos, spillLen;
+
+    private final byte[] scratchBytes = new byte[64];
+    private final ByteBuffer scratch = ByteBuffer.wrap(scratchBytes).order(ByteOrder.nativeOrder());
+
+    // Lowercases every 'A'..'Z' byte of a word and leaves the non-ASCII bytes alone.
+    // The top bit of each byte is masked off first so the additions can't carry
+    // into the next byte.
+    static long lowerAscii(long word) {
+        long low = word & ~HIGH_BITS;
+        long atLeastA = low + ONES * (0x80 - 'A');
+        long pastZ = low + ONES * (0x80 - 'Z' - 1);
+        long upper = atLeastA & ~pastZ & ~word & HIGH_BITS;
+        return word | (upper >>> 2);
+    }
+
+    static byte lowerAscii(byte c) {
+        return (c >= 'A' && c <= 'Z') ? (byte) (c | 0x20) : c;
+    }
+
+    boolean hasSpill() {
+        return spillPos < spillLen;
+    }
+
+    int spilled() {
+        return spillLen - spillPos;
+    }
+
+    int nextSpilled() {
+        return spill[spillPos++] & 0xFF;
+    }
+
+    // Copies up to len pending output bytes into dst[off...], returns how many.
+    int drainSpill(byte[] dst, int off, int len) {
+        int n = Math.min(len, spillLen - spillPos);
+        System.arraycopy(spill, spillPos, dst, off, n);
+        spillPos += n;
+        return n;
+    }
+
+    int drainSpill(ByteBuffer dst) {
+        int n = Math.min(dst.remaining(), spillLen - spillPos);
+        dst.put(spill, spillPos, n);
+        spillPos += n;
+        return n;
+    }
+
+    // Moves up to len carried input bytes to buf[off...], returns how many.
+    int takeCarry(ByteBuffer buf, int off, int len) {
+        int n = Math.min(len, carryLen);
+        buf.put(off, carry, 0, n);
+        System.arraycopy(carry, n, carry, 0, carryLen - n);
+        carryLen -= n;
+        return n;
+    }
+
+    // Fills the spill buffer with lowercased output, for reads too small to work in
+    // place (a single UTF-8 sequence is up to four bytes). Returns how many bytes
+    // are spilled, or -1 at the end of input.
+    int fillSpill(ByteSource source) throws IOException {
+        int end = process(scratch, 0, scratchBytes.length, source);
+        if (end > 0) {
+            System.arraycopy(scratchBytes, 0, spill, 0, end);
+            spillPos = 0;
+            spillLen = end;
+        }
+        return end < 0 ? -1 : spilled();
+    }
+
+    // Where the raw bytes come from: reads into buf[off, off+len), -1 at end of input.
+    interface ByteSource {
+        int read(ByteBuffer buf, int off, int len) throws IOException;
+    }
+
+    // Fills buf[off, off+len) from the carry and the source and lowercases it.
+    // Returns the end of the output (> off), off if nothing is available yet (only
+    // a non-blocking source can cause this), or -1 at the end of input.
+    // When it returns off the spill may hold output; callers check hasSpill().
+    int process(ByteBuffer buf, int off, int len, ByteSource source) throws IOException {
+        while (true) {
+            int filled = takeCarry(buf, off, len);
+            boolean eof = false, starved = false;
+            if (filled < len) {
+                int n = source.read(buf, off + filled, len - filled);
+                eof = n < 0;
+                starved = n == 0;
+                if (n > 0) {
+                    filled += n;
+                }
+            }
+            if (filled == 0) {
+                return eof ? -1 : off;
+            }
+            int end = lower(buf, off, off + filled, eof);
+            if (end > off || hasSpill() || starved) {
+                return end;
+            }
+            // only an incomplete sequence was read; go back for the rest of it
+        }
+    }
+
+    // Lowercases buf[from, to) in place and returns the end of the output.
+    // Any input it stops short of goes to the carry.
+    int lower(ByteBuffer buf, int from, int to, boolean eof) {
+        int r = from, w = from;
+        boolean littleEndian = buf.order() == ByteOrder.LITTLE_ENDIAN;
+        while (r < to) {
+            if (r + 8 <= to) {
+                long word = buf.getLong(r);
+                long high = word & HIGH_BITS;
+                if (high == 0) {
+                    buf.putLong(w, lowerAscii(word));
+                    r += 8;
+                    w += 8;
+                    continue;
+                }
+                if (w == r) {
+                    // lowercase the ASCII bytes before the first non-ASCII one in one go
+                    int ascii = (littleEndian ? Long.numberOfTrailingZeros(high) : Long.numberOfLeadingZeros(high)) >>> 3;
+                    buf.putLong(w, lowerAscii(word));
+                    r += ascii;
+                    w += ascii;
+                }
+            }
+            byte c = buf.get(r);
+            if (c >= 0) {
+                buf.put(w++, lowerAscii(c));
+                r++;
+                continue;
+            }
+            if ((c & 0xE0) == 0xC0 && r + 1 < to && w == r) {
+                // two-byte sequences (Latin, Greek, Cyrillic...) are the common case
+                int c1 = buf.get(r + 1);
+                int cp = ((c & 0x1F) << 6) | (c1 & 0x3F);
+                if ((c1 & 0xC0) == 0x80 && cp >= 0x80) {
+                    int lower = Character.toLowerCase(cp);
+                    if (lower >= 0x80 && lower < 0x800) {
+                        buf.put(r, (byte) (0xC0 | (lower >> 6)));
+                        buf.put(r + 1, (byte) (0x80 | (lower & 0x3F)));
+                        r += 2;
+                        w += 2;
+                        continue;
+                    }
+                }
+            }
+            int n = sequenceLength(c);
+            if (n > 0 && r + n > to && !eof) {
+                break;
+            }
+            int cp = n > 0 && r + n <= to ? decode(buf, r, n) : -1;
+            if (cp < 0) {
+                buf.put(w++, c);
+                r++;
+                continue;
+            }
+            int lower = Character.toLowerCase(cp);
+            if (lower == cp) {
+                copy(buf, r, w, n);
+                r += n;
+                w += n;
+                continue;
+            }
+            int m = encodedLength(lower);
+            if (w + m > r + n) {
+                if (w == from) {
+                    spillPos = 0;
+                    spillLen = encode(ByteBuffer.wrap(spill), 0, lower);
+                    r += n;
+                }
+                break;
+            }
+            encode(buf, w, lower);
+            r += n;
+            w += m;
+        }
+        saveCarry(buf, r, to);
+        return w;
+    }
+
+    private void saveCarry(ByteBuffer buf, int from, int to) {
+        int n = to - from;
+        if (n == 0) {
+            return;
+        }
+        if (carryLen + n > carry.length) {
+            carry = Arrays.copyOf(carry, Math.max(carryLen + n, carry.length * 2));
+        }
+        // carried bytes go before whatever is still carried from earlier
+        System.arraycopy(carry, 0, carry, n, carryLen);
+        buf.get(from, carry, 0, n);
+        carryLen += n;
+    }
+
+    private static void copy(ByteBuffer buf, int from, int to, int n) {
+        if (from != to) {
+            for (int i = 0; i < n; i++) {
+                buf.put(to + i, buf.get(from + i));
+            }
+        }
+    }
+
+    private static int sequenceLength(byte lead) {
+        if ((lead & 0xE0) == 0xC0) return 2;
+        if ((lead & 0xF0) == 0xE0) return 3;
+        if ((lead & 0xF8) == 0xF0) return 4;
+        return 0;
+    }
+
+    // Returns the code point at buf[at], or -1 if the sequence is malformed
+    // (bad continuation byte, overlong form, surrogate or out of range).
+    private static int decode(ByteBuffer buf, int at, int n) {
+        int cp = buf.get(at) & (0x7F >> n);
+        for (int i = 1; i < n; i++) {
+            int b = buf.get(at + i);
+            if ((b & 0xC0) != 0x80) {
+                return -1;
+            }
+            cp = (cp << 6) | (b & 0x3F);
+        }
+        int min = n == 2 ? 0x80 : n == 3 ? 0x800 : 0x10000;
+        if (cp < min || cp > Character.MAX_CODE_POINT
+                || (cp >= Character.MIN_SURROGATE && cp <= Character.MAX_SURROGATE)) {
+            return -1;
+        }
+        return cp;
+    }
+
+    private static int encodedLength(int cp) {
+        return cp < 0x80 ? 1 : cp < 0x800 ? 2 : cp < 0x10000 ? 3 : 4;
+    }
+
+    private static int encode(ByteBuffer buf, int at, int cp) {
+        int n = encodedLength(cp);
+        if (n == 1) {
+            buf.put(at, (byte) cp);
+            return 1;
+        }
+        buf.put(at, (byte) ((0xF00 >> n) | (cp >> (6 * (n - 1)))));
+        for (int i = 1; i < n; i++) {
+            buf.put(at + i, (byte) (0x80 | ((cp >> (6 * (n - 1 - i))) & 0x3F)));
+        }
+        return n;
+    }
+}
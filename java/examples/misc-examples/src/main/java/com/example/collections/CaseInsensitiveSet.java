@@ -0,0 +1,306 @@
+package com.example.collections;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ A set of Strings that ignores case, like a TreeSet with String.CASE_INSENSITIVE_ORDER
+ but with O(1) adds and lookups instead of O(log n) comparisons.
+
+ A TreeSet compares the new key with about log2(n) others, and compareToIgnoreCase
+ folds the case of both strings again on every comparison. Here each key is folded
+ once (the same folding as compareToIgnoreCase: toLowerCase(toUpperCase(c)) per code
+ point), the folded form is hashed, and the keys go in an open-addressing table. Keys
+ that are already folded - lowercase ASCII, the common case - are their own folded form
+ and cost no extra String.
+
+ The first spelling added is the one kept: after add("Word"), add("WORD") returns false
+ and the set still holds "Word". get("word") returns the kept spelling.
+
+ Iteration is in the order keys were first added, like LinkedHashSet. sorted() gives
+ the keys in case-insensitive order; the sorted list is only built when asked for and
+ is kept until the set changes.
+
+ The table holds int indices into arrays of keys in insertion order, so it stays small
+ (a 4-byte slot per entry at the most-half-full load) and iteration needs no links.
+ Not thread-safe. Null keys are not allowed.
+ */
+public final class CaseInsensitiveSet extends AbstractSet<String> {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // entry index + 1 per slot, 0 for a free slot; at most half full
+    private int[] table;
+    private int shift;
+
+    // the entries, in the order they were added; removed ones are null
+    private String[] keys;
+    private String[] folded;
+    private int[] hashes;
+    private int used;
+    private int size;
+
+    private int modCount;
+    private List<String> sorted;
+
+    public CaseInsensitiveSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /* A set that holds expectedSize keys without growing. */
+    public CaseInsensitiveSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expectedSize must not be negative: " + expectedSize);
+        }
+        int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize) * 2 - 1) * 2;
+        table = new int[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        keys = new String[Math.max(MIN_CAPACITY / 2, expectedSize)];
+        folded = new String[keys.length];
+        hashes = new int[keys.length];
+    }
+
+    /* The case-folded form of s, or s itself if folding does not change it. */
+    public static String fold(String s) {
+        int n = s.length();
+        int i = 0;
+        for (; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80 ? foldChar(c) != c || Character.isSurrogate(c) : c >= 'A' && c <= 'Z') {
+                break;
+            }
+        }
+        if (i == n) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(n);
+        sb.append(s, 0, i);
+        while (i < n) {
+            int cp = s.codePointAt(i);
+            sb.appendCodePoint(Character.toLowerCase(Character.toUpperCase(cp)));
+            i += Character.charCount(cp);
+        }
+        String result = sb.toString();
+        // a lone surrogate or a supplementary character that folds to itself
+        return result.equals(s) ? s : result;
+    }
+
+    private static char foldChar(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean add(String key) {
+        String f = fold(key);
+        int hash = f.hashCode();
+        int slot = slot(hash);
+        for (int e; (e = table[slot]) != 0; slot = (slot + 1) & (table.length - 1)) {
+            if (hashes[e - 1] == hash && f.equals(folded[e - 1])) {
+                return false;
+            }
+        }
+        if (used == keys.length) {
+            // make room: drop removed entries, or grow
+            resize(size * 2 < keys.length ? keys.length : keys.length * 2);
+            slot = free(hash);
+        }
+        keys[used] = key;
+        folded[used] = f;
+        hashes[used] = hash;
+        table[slot] = ++used;
+        size++;
+        modCount++;
+        sorted = null;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof String && find((String) o) >= 0;
+    }
+
+    /* The spelling of key that was added first, or null if it is not in the set. */
+    public String get(String key) {
+        int e = find(key);
+        return e < 0 ? null : keys[e];
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        String f = fold((String) o);
+        int hash = f.hashCode();
+        int mask = table.length - 1;
+        int slot = slot(hash);
+        for (int e; (e = table[slot]) != 0; slot = (slot + 1) & mask) {
+            if (hashes[e - 1] == hash && f.equals(folded[e - 1])) {
+                keys[e - 1] = null;
+                folded[e - 1] = null;
+                deleteSlot(slot);
+                size--;
+                modCount++;
+                sorted = null;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(table, 0);
+        Arrays.fill(keys, 0, used, null);
+        Arrays.fill(folded, 0, used, null);
+        used = 0;
+        size = 0;
+        modCount++;
+        sorted = null;
+    }
+
+    /* The keys ordered as compareToIgnoreCase orders them; unmodifiable. */
+    public List<String> sorted() {
+        if (sorted == null) {
+            Integer[] order = new Integer[size];
+            for (int e = 0, i = 0; e < used; e++) {
+                if (keys[e] != null) {
+                    order[i++] = e;
+                }
+            }
+            // the folded forms compare like the keys do with compareToIgnoreCase
+            Arrays.sort(order, (a, b) -> folded[a].compareTo(folded[b]));
+            String[] result = new String[size];
+            for (int i = 0; i < size; i++) {
+                result[i] = keys[order[i]];
+            }
+            sorted = Collections.unmodifiableList(Arrays.asList(result));
+        }
+        return sorted;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int next = skipRemoved(0);
+            private int last = -1;
+            private int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return next < used;
+            }
+
+            @Override
+            public String next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (next >= used) {
+                    throw new NoSuchElementException();
+                }
+                last = next;
+                next = skipRemoved(next + 1);
+                return keys[last];
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0) {
+                    throw new IllegalStateException();
+                }
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                // removing leaves the other entries where they are
+                CaseInsensitiveSet.this.remove(keys[last]);
+                last = -1;
+                expectedModCount = modCount;
+            }
+        };
+    }
+
+    private int skipRemoved(int e) {
+        while (e < used && keys[e] == null) {
+            e++;
+        }
+        return e;
+    }
+
+    // Entry index of key, or -1.
+    private int find(String key) {
+        String f = fold(key);
+        int hash = f.hashCode();
+        for (int slot = slot(hash), e; (e = table[slot]) != 0; slot = (slot + 1) & (table.length - 1)) {
+            if (hashes[e - 1] == hash && f.equals(folded[e - 1])) {
+                return e - 1;
+            }
+        }
+        return -1;
+    }
+
+    // Fibonacci hashing: String hash codes of similar words are close together, the
+    // multiply spreads them over the whole table.
+    private int slot(int hash) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    private int free(int hash) {
+        int slot = slot(hash);
+        while (table[slot] != 0) {
+            slot = (slot + 1) & (table.length - 1);
+        }
+        return slot;
+    }
+
+    // Empties a slot and moves later entries of the probe run back, so that no lookup
+    // stops early at the hole (no tombstones needed).
+    private void deleteSlot(int hole) {
+        int mask = table.length - 1;
+        for (int slot = (hole + 1) & mask, e; (e = table[slot]) != 0; slot = (slot + 1) & mask) {
+            int home = slot(hashes[e - 1]);
+            // move the entry if its home is not in (hole, slot], going around the table
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = e;
+                hole = slot;
+            }
+        }
+        table[hole] = 0;
+    }
+
+    private void resize(int entries) {
+        int live = 0;
+        for (int e = 0; e < used; e++) {
+            if (keys[e] != null) {
+                keys[live] = keys[e];
+                folded[live] = folded[e];
+                hashes[live] = hashes[e];
+                live++;
+            }
+        }
+        Arrays.fill(keys, live, used, null);
+        Arrays.fill(folded, live, used, null);
+        used = live;
+        if (entries != keys.length) {
+            keys = Arrays.copyOf(keys, entries);
+            folded = Arrays.copyOf(folded, entries);
+            hashes = Arrays.copyOf(hashes, entries);
+        }
+        int capacity = Math.max(table.length, Integer.highestOneBit(entries * 2 - 1) * 2);
+        table = new int[capacity];
+        shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        for (int e = 0; e < used; e++) {
+            table[free(hashes[e])] = e + 1;
+        }
+    }
+}
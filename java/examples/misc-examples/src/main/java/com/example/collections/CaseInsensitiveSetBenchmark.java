@@ -0,0 +1,97 @@
+package com.example.collections;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+/*
+ Case-insensitive dedup of a word list, nanoseconds per add:
+
+    TreeSet             FindDupsAnswer's TreeSet with a compareToIgnoreCase comparator
+    HashSet+toLowerCase a HashSet of lowercased words: fast, but loses the spelling
+    CaseInsensitiveSet  folds once, hashes, keeps the first spelling
+
+ plus the cost of getting the words sorted: free for the TreeSet, sorted() for the
+ CaseInsensitiveSet.
+
+ The words are random, in lowercase, Capitalized and UPPERCASE variants, or the
+ whitespace-separated words of a file.
+
+ Usage: CaseInsensitiveSetBenchmark [words [distinct]]
+        CaseInsensitiveSetBenchmark --file file
+ */
+public class CaseInsensitiveSetBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        List<String> words;
+        if (args.length > 1 && args[0].equals("--file")) {
+            words = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(args[1]))) {
+                for (String w : line.trim().split("\\s+")) {
+                    if (!w.isEmpty()) {
+                        words.add(w);
+                    }
+                }
+            }
+        } else {
+            int n = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+            int distinct = args.length > 1 ? Integer.parseInt(args[1]) : n / 10;
+            words = randomWords(n, distinct, new Random(42));
+        }
+        System.out.printf("%,d words%n", words.size());
+
+        for (int round = 0; round < 3; round++) {
+            run("TreeSet", words, () -> new TreeSet<>(String::compareToIgnoreCase), false);
+            run("HashSet+toLowerCase", words, HashSet::new, true);
+            run("CaseInsensitiveSet", words, CaseInsensitiveSet::new, false);
+
+            CaseInsensitiveSet set = new CaseInsensitiveSet();
+            set.addAll(words);
+            long start = System.nanoTime();
+            List<String> sorted = set.sorted();
+            System.out.printf("%-20s %,12d ms   %,d words%n", "  sorted()",
+                    (System.nanoTime() - start) / 1_000_000, sorted.size());
+            System.out.println();
+        }
+    }
+
+    private static void run(String name, List<String> words, Supplier<Collection<String>> factory, boolean lower) {
+        Collection<String> set = factory.get();
+        long start = System.nanoTime();
+        for (String w : words) {
+            set.add(lower ? w.toLowerCase(Locale.ROOT) : w);
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.printf("%-20s %,12.1f ns/add   %,d distinct%n", name, elapsed / (double) words.size(), set.size());
+    }
+
+    private static List<String> randomWords(int n, int distinct, Random random) {
+        String[] vocabulary = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            char[] w = new char[3 + random.nextInt(8)];
+            for (int j = 0; j < w.length; j++) {
+                w[j] = (char) ('a' + random.nextInt(26));
+            }
+            vocabulary[i] = new String(w);
+        }
+        List<String> words = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            String w = vocabulary[random.nextInt(distinct)];
+            switch (random.nextInt(4)) {
+                case 0: w = w.toUpperCase(Locale.ROOT); break;
+                case 1: w = Character.toUpperCase(w.charAt(0)) + w.substring(1); break;
+                default: w = new String(w);
+            }
+            words.add(w);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,375 @@
+package com.example.collections;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ The k most frequent words of a stream, in fixed memory however many distinct words
+ there are: a Space-Saving summary of k counters, helped by a Count-Min sketch.
+
+ Space-Saving (Metwally et al.) keeps k words with counters. A word that is tracked
+ just has its counter raised. A new word replaces the word with the smallest counter
+ and inherits that counter plus one, which may be far more than the new word really
+ occurred. The Count-Min sketch (Cormode and Muthukrishnan) limits that: it is a
+ depth x width table of counters, each word adds to one counter per row, and the
+ smallest of its counters is an upper bound on how often it occurred. A new word
+ starts from whichever bound is lower, so rare words start low and churn at the
+ bottom of the summary instead of pushing out frequent ones. Updates are
+ conservative (only the counters at the minimum are raised), which keeps the
+ sketch's bounds tighter still.
+
+ Every reported count is an upper bound, and count - error a lower bound, on the
+ true count. The sketch overestimates a word by at most e/width of all words seen,
+ with probability 1 - e^-depth. As in plain Space-Saving, a word that occurs more
+ than total / k times is sure to be in a summary fed directly (the counters add up
+ to at most the total, so the smallest is at most total / k).
+
+ Memory: depth * width longs for the sketch (4 x 16384 = 512 KB by default) and
+ about 100 bytes plus the word for each of the k counters. Words are hashed from
+ their UTF-8 bytes (HyperLogLog.hash) and only become Strings when they enter the
+ summary; two words with the same 64-bit hash would be counted as one.
+
+ Partial summaries merge: give every thread its own, with the same k, width and
+ depth, and merge them at the end (or copy() them for a snapshot while they are
+ still being fed). A merged summary keeps the upper and lower bounds; words that
+ were frequent in the combined stream but never made it into any partial summary
+ can be missing, which takes a word spread thinly across many partials.
+
+ Not thread-safe; a summary that is fed by one thread and snapshotted from another
+ has to be locked by the caller (see TopWords).
+ */
+public final class HeavyHitters {
+
+    public static final int DEFAULT_WIDTH = 1 << 14;
+    public static final int DEFAULT_DEPTH = 4;
+
+    /* One word of the summary. */
+    public static final class Entry {
+        private final String word;
+        private final long count;
+        private final long error;
+
+        Entry(String word, long count, long error) {
+            this.word = word;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String word() {
+            return word;
+        }
+
+        /* At least the true count. */
+        public long count() {
+            return count;
+        }
+
+        /* By how much count may be too high. */
+        public long error() {
+            return error;
+        }
+
+        /* At most the true count. */
+        public long guaranteed() {
+            return count - error;
+        }
+
+        @Override
+        public String toString() {
+            return word + "=" + count + (error > 0 ? "(-" + error + ")" : "");
+        }
+    }
+
+    private static final class Counter {
+        final long hash;
+        final String word;
+        long count;
+        long error;
+        int heapIndex;
+
+        Counter(long hash, String word, long count, long error) {
+            this.hash = hash;
+            this.word = word;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int k;
+    private final int width;
+    private final int depth;
+    private final long[] sketch;
+    private long total;
+
+    // min-heap on count, and a hash table from word hash to counter
+    private final Counter[] heap;
+    private int size;
+    private final Counter[] table;
+    // no word outside the summary occurred more often than this
+    private long floor;
+
+    public HeavyHitters(int k) {
+        this(k, DEFAULT_WIDTH, DEFAULT_DEPTH);
+    }
+
+    /* width is rounded up to a power of two. */
+    public HeavyHitters(int k, int width, int depth) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        if (width < 1 || width > 1 << 30) {
+            throw new IllegalArgumentException("width must be in [1, 2^30]: " + width);
+        }
+        if (depth < 1) {
+            throw new IllegalArgumentException("depth must be positive: " + depth);
+        }
+        this.k = k;
+        this.width = Integer.highestOneBit(width * 2 - 1);
+        this.depth = depth;
+        this.sketch = new long[this.width * depth];
+        this.heap = new Counter[k];
+        this.table = new Counter[Integer.highestOneBit(k * 4 - 1) * 2];
+    }
+
+    public int k() {
+        return k;
+    }
+
+    /* Words added so far. */
+    public long total() {
+        return total;
+    }
+
+    public void add(String word) {
+        add(HyperLogLog.hash(word), word, null, 0, 0, 1);
+    }
+
+    public void add(byte[] b, int from, int to) {
+        add(HyperLogLog.hash(b, from, to), null, b, from, to, 1);
+    }
+
+    public void add(String word, long n) {
+        add(HyperLogLog.hash(word), word, null, 0, 0, n);
+    }
+
+    private void add(long hash, String word, byte[] b, int from, int to, long n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must not be negative: " + n);
+        }
+        total += n;
+        long bound = raise(hash, n);
+        Counter c = find(hash);
+        if (c != null) {
+            c.count += n;
+            siftDown(c.heapIndex);
+            return;
+        }
+        if (size == k) {
+            Counter min = heap[0];
+            bound = Math.min(bound, Math.max(floor, min.count) + n);
+            if (bound <= min.count) {
+                // it could not outrank anything in the summary
+                floor = Math.max(floor, bound);
+                return;
+            }
+            floor = Math.max(floor, min.count);
+            remove(min);
+            c = new Counter(hash, word != null ? word : new String(b, from, to - from, StandardCharsets.UTF_8),
+                    bound, bound - n);
+            c.heapIndex = 0;
+            heap[0] = c;
+            siftDown(0);
+        } else {
+            bound = Math.min(bound, floor + n);
+            c = new Counter(hash, word != null ? word : new String(b, from, to - from, StandardCharsets.UTF_8),
+                    bound, bound - n);
+            c.heapIndex = size;
+            heap[size++] = c;
+            siftUp(c.heapIndex);
+        }
+        insert(c);
+    }
+
+    /* An upper bound on how often word occurred. */
+    public long estimate(String word) {
+        long hash = HyperLogLog.hash(word);
+        Counter c = find(hash);
+        return Math.min(sketchEstimate(hash), c != null ? c.count : floor);
+    }
+
+    /* The summary, most frequent first. */
+    public List<Entry> top() {
+        Counter[] counters = Arrays.copyOf(heap, size);
+        Arrays.sort(counters, (a, b) -> Long.compare(b.count, a.count));
+        List<Entry> result = new ArrayList<>(size);
+        for (Counter c : counters) {
+            result.add(new Entry(c.word, c.count, c.error));
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /* Combines other into this summary and returns it. */
+    public HeavyHitters merge(HeavyHitters other) {
+        if (other.k != k || other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("cannot merge summaries of different k, width or depth");
+        }
+        // every word tracked on either side, with what the other side may add to it
+        List<Counter> union = new ArrayList<>(size + other.size);
+        for (int i = 0; i < size; i++) {
+            Counter c = heap[i];
+            Counter o = other.find(c.hash);
+            long count = c.count, error = c.error;
+            if (o != null) {
+                count += o.count;
+                error += o.error;
+            } else {
+                long bound = Math.min(other.sketchEstimate(c.hash), other.floor);
+                count += bound;
+                error += bound;
+            }
+            union.add(new Counter(c.hash, c.word, count, error));
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter o = other.heap[i];
+            if (find(o.hash) == null) {
+                long bound = Math.min(sketchEstimate(o.hash), floor);
+                union.add(new Counter(o.hash, o.word, o.count + bound, o.error + bound));
+            }
+        }
+        union.sort((a, b) -> Long.compare(b.count, a.count));
+
+        for (int i = 0; i < sketch.length; i++) {
+            sketch[i] += other.sketch[i];
+        }
+        total += other.total;
+        floor += other.floor;
+        if (union.size() > k) {
+            floor = Math.max(floor, union.get(k).count);
+        }
+        Arrays.fill(table, null);
+        Arrays.fill(heap, null);
+        size = 0;
+        for (Counter c : union.subList(0, Math.min(k, union.size()))) {
+            c.heapIndex = size;
+            heap[size++] = c;
+            siftUp(c.heapIndex);
+            insert(c);
+        }
+        return this;
+    }
+
+    /* An independent copy, e.g. to read while this one keeps being fed. */
+    public HeavyHitters copy() {
+        return new HeavyHitters(k, width, depth).merge(this);
+    }
+
+    // Count-Min: row i uses h1 + i * h2 (Kirsch and Mitzenmacher: two hashes are as good as depth).
+    // Raises the word's smallest counters by n and returns its new estimate.
+    private long raise(long hash, long n) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        int mask = width - 1;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, sketch[i * width + ((h1 + i * h2) & mask)]);
+        }
+        long raised = min + n;
+        for (int i = 0; i < depth; i++) {
+            int at = i * width + ((h1 + i * h2) & mask);
+            if (sketch[at] < raised) {
+                sketch[at] = raised;
+            }
+        }
+        return raised;
+    }
+
+    private long sketchEstimate(long hash) {
+        int h1 = (int) hash, h2 = (int) (hash >>> 32) | 1;
+        int mask = width - 1;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < depth; i++) {
+            min = Math.min(min, sketch[i * width + ((h1 + i * h2) & mask)]);
+        }
+        return min;
+    }
+
+    private void siftUp(int i) {
+        Counter c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent].count <= c.count) {
+                break;
+            }
+            heap[i] = heap[parent];
+            heap[i].heapIndex = i;
+            i = parent;
+        }
+        heap[i] = c;
+        c.heapIndex = i;
+    }
+
+    private void siftDown(int i) {
+        Counter c = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (c.count <= heap[child].count) {
+                break;
+            }
+            heap[i] = heap[child];
+            heap[i].heapIndex = i;
+            i = child;
+        }
+        heap[i] = c;
+        c.heapIndex = i;
+    }
+
+    // The table is linear-probing on the word hash and at most a quarter full.
+
+    private int slot(long hash) {
+        return (int) (hash >>> 40) & (table.length - 1);
+    }
+
+    private Counter find(long hash) {
+        int mask = table.length - 1;
+        for (int slot = slot(hash); table[slot] != null; slot = (slot + 1) & mask) {
+            if (table[slot].hash == hash) {
+                return table[slot];
+            }
+        }
+        return null;
+    }
+
+    private void insert(Counter c) {
+        int mask = table.length - 1;
+        int slot = slot(c.hash);
+        while (table[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = c;
+    }
+
+    // Backward-shift deletion, as in CaseInsensitiveSet.
+    private void remove(Counter c) {
+        int mask = table.length - 1;
+        int hole = slot(c.hash);
+        while (table[hole] != c) {
+            hole = (hole + 1) & mask;
+        }
+        for (int slot = (hole + 1) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            int home = slot(table[slot].hash);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                table[hole] = table[slot];
+                hole = slot;
+            }
+        }
+        table[hole] = null;
+    }
+}
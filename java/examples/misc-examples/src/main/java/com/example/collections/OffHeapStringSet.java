@@ -0,0 +1,355 @@
+package com.example.collections;
+
+import com.example.io.Utf8;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/*
+ An exact set of strings for hundreds of millions of keys, kept outside the Java heap.
+
+ A LinkedHashSet<String> costs about 80 bytes per key on top of the String itself
+ (entry object, links, table slot, String header and byte[] header), and every one of
+ those objects is something the garbage collector has to trace and copy. Here the keys
+ are stored as UTF-8 bytes in direct ByteBuffers, one after the other:
+
+    arena record   8-byte hash | length (varint) | UTF-8 bytes
+    table slot     8 bytes: 24 bits of the hash | 40-bit arena address + 1 (0 = free)
+
+ so a key of n bytes takes about n + 9 bytes in the arena plus 8 / load (11 to 23)
+ bytes of table, and the heap holds only a few dozen buffer objects however many
+ keys there are. The arena is in insertion order, so that is the iteration order,
+ like LinkedHashSet. The table is open addressing with linear probing; the 24 hash
+ bits in the slot skip almost every key comparison that would fail.
+
+ Growing the table does not stop the world to rehash it. The new table, twice the
+ size, starts empty, and every add moves a couple of keys across, reading the arena
+ in order and reusing the stored hashes, so no key is hashed again. Until that is
+ done a lookup checks the new table and then the old one. The move finishes long
+ before the new table fills up. What is left of the pause is allocating the new
+ table, which the JVM zeroes: about 16 bytes per key at memset speed, some 40 ms at
+ five million keys, where the slowest add to a LinkedHashSet (a rehash or a garbage
+ collection) takes seconds (see OffHeapStringSetBenchmark).
+
+ Keys can only be added (FindDups never removes any). Direct memory is limited by
+ -XX:MaxDirectMemorySize (by default the maximum heap size) and is given back when
+ the set is garbage collected; clear() lets go of it sooner. Not thread-safe.
+ */
+public final class OffHeapStringSet extends AbstractSet<String> {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int CHUNK_BITS = 26;                 // 64 MB of arena per chunk
+    private static final int FIRST_CHUNK = 64 * 1024;
+    private static final int MAX_KEY = (1 << CHUNK_BITS) - 16;
+    private static final long ADDRESS_MASK = (1L << 40) - 1;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MIGRATE_PER_ADD = 2;
+
+    // The table: power-of-two slots, in pages of up to 2^24 slots (128 MB) each.
+    private static final class Table {
+        static final int PAGE_BITS = 24;
+        final ByteBuffer[] pages;
+        final long capacity;
+        final int shift;
+
+        Table(long capacity) {
+            this.capacity = capacity;
+            this.shift = 64 - Long.numberOfTrailingZeros(capacity);
+            int pageSlots = (int) Math.min(capacity, 1L << PAGE_BITS);
+            pages = new ByteBuffer[(int) (capacity / pageSlots)];
+            for (int i = 0; i < pages.length; i++) {
+                pages[i] = ByteBuffer.allocateDirect(pageSlots * 8).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        long get(long slot) {
+            return pages[(int) (slot >>> PAGE_BITS)].getLong((int) (slot & ((1 << PAGE_BITS) - 1)) << 3);
+        }
+
+        void set(long slot, long value) {
+            pages[(int) (slot >>> PAGE_BITS)].putLong((int) (slot & ((1 << PAGE_BITS) - 1)) << 3, value);
+        }
+
+        long home(long hash) {
+            return hash >>> shift;
+        }
+
+        long bytes() {
+            return capacity * 8;
+        }
+    }
+
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer chunk;       // the last one, being appended to
+    private long count;
+
+    private Table table;
+    // while growing: the table being emptied, the next arena record to move to the new
+    // table and how many are left
+    private Table old;
+    private long migrating, toMigrate;
+
+    public OffHeapStringSet() {
+        table = new Table(MIN_CAPACITY);
+    }
+
+    @Override
+    public int size() {
+        return (int) Math.min(count, Integer.MAX_VALUE);
+    }
+
+    /* The number of keys, which can be more than size() can say. */
+    public long count() {
+        return count;
+    }
+
+    /* Direct memory held: arena and tables. */
+    public long offHeapBytes() {
+        long bytes = table.bytes() + (old != null ? old.bytes() : 0);
+        for (ByteBuffer c : chunks) {
+            bytes += c.capacity();
+        }
+        return bytes;
+    }
+
+    @Override
+    public boolean add(String key) {
+        byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+        return add(utf8, 0, utf8.length);
+    }
+
+    /* Adds the UTF-8 key in b[from, to); false if it was already there. */
+    public boolean add(byte[] b, int from, int to) {
+        return add(HyperLogLog.hash(b, from, to), b, from, to);
+    }
+
+    /* Adds every key of other, without hashing them again. */
+    public void addAll(OffHeapStringSet other) {
+        byte[] scratch = new byte[256];
+        for (long address = other.first(); address >= 0; address = other.next(address)) {
+            ByteBuffer c = other.chunks.get((int) (address >>> CHUNK_BITS));
+            int at = (int) (address & ((1 << CHUNK_BITS) - 1));
+            long hash = c.getLong(at);
+            int length = readLength(c, at + 8);
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, 2 * scratch.length)];
+            }
+            c.get(at + 8 + lengthSize(length), scratch, 0, length);
+            add(hash, scratch, 0, length);
+        }
+    }
+
+    private boolean add(long hash, byte[] b, int from, int to) {
+        if (to - from > MAX_KEY) {
+            throw new IllegalArgumentException("key too long: " + (to - from) + " bytes");
+        }
+        if (old != null) {
+            migrate(MIGRATE_PER_ADD);
+        }
+        long slot = find(table, hash, b, from, to);
+        if (slot < 0) {
+            return false;
+        }
+        if (old != null && find(old, hash, b, from, to) < 0) {
+            return false;
+        }
+        long address = append(hash, b, from, to);
+        table.set(slot, fingerprint(hash) | (address + 1));
+        count++;
+        if (count > table.capacity / 10 * 7) {
+            grow();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        byte[] utf8 = ((String) o).getBytes(StandardCharsets.UTF_8);
+        return contains(utf8, 0, utf8.length);
+    }
+
+    public boolean contains(byte[] b, int from, int to) {
+        long hash = HyperLogLog.hash(b, from, to);
+        return find(table, hash, b, from, to) < 0 || (old != null && find(old, hash, b, from, to) < 0);
+    }
+
+    @Override
+    public void clear() {
+        chunks.clear();
+        chunk = null;
+        count = 0;
+        table = new Table(MIN_CAPACITY);
+        old = null;
+    }
+
+    /* The keys in the order they were added, decoded into Strings one at a time. */
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private long address = first();
+            private byte[] scratch = new byte[256];
+
+            @Override
+            public boolean hasNext() {
+                return address >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (address < 0) {
+                    throw new NoSuchElementException();
+                }
+                ByteBuffer c = chunks.get((int) (address >>> CHUNK_BITS));
+                int at = (int) (address & ((1 << CHUNK_BITS) - 1)) + 8;
+                int length = readLength(c, at);
+                if (scratch.length < length) {
+                    scratch = new byte[Math.max(length, 2 * scratch.length)];
+                }
+                c.get(at + lengthSize(length), scratch, 0, length);
+                address = OffHeapStringSet.this.next(address);
+                return Utf8.decode(scratch, 0, length);
+            }
+        };
+    }
+
+    // Where a key would go in t, or -1 - slot if it is there already.
+    private long find(Table t, long hash, byte[] b, int from, int to) {
+        long fingerprint = fingerprint(hash);
+        long mask = t.capacity - 1;
+        for (long slot = t.home(hash); ; slot = (slot + 1) & mask) {
+            long entry = t.get(slot);
+            if (entry == 0) {
+                return slot;
+            }
+            if ((entry & ~ADDRESS_MASK) == fingerprint && keyEquals((entry & ADDRESS_MASK) - 1, hash, b, from, to)) {
+                return -1 - slot;
+            }
+        }
+    }
+
+    private static long fingerprint(long hash) {
+        return (hash & 0xFFFFFF) << 40;
+    }
+
+    private boolean keyEquals(long address, long hash, byte[] b, int from, int to) {
+        ByteBuffer c = chunks.get((int) (address >>> CHUNK_BITS));
+        int at = (int) (address & ((1 << CHUNK_BITS) - 1));
+        if (c.getLong(at) != hash) {
+            return false;
+        }
+        int length = to - from;
+        at += 8;
+        if (readLength(c, at) != length) {
+            return false;
+        }
+        at += lengthSize(length);
+        int i = 0;
+        for (; i + 8 <= length; i += 8) {
+            if (c.getLong(at + i) != (long) LONGS.get(b, from + i)) {
+                return false;
+            }
+        }
+        for (; i < length; i++) {
+            if (c.get(at + i) != b[from + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Appends a record to the arena and returns its address.
+    private long append(long hash, byte[] b, int from, int to) {
+        int length = to - from;
+        int recordSize = 8 + lengthSize(length) + length;
+        if (chunk == null || chunk.remaining() < recordSize) {
+            int size = chunk == null ? FIRST_CHUNK : Math.min(chunk.capacity() * 2, 1 << CHUNK_BITS);
+            chunk = ByteBuffer.allocateDirect(Math.max(size, recordSize)).order(ByteOrder.LITTLE_ENDIAN);
+            chunks.add(chunk);
+        }
+        long address = ((long) (chunks.size() - 1) << CHUNK_BITS) | chunk.position();
+        chunk.putLong(hash);
+        for (int v = length; ; v >>>= 7) {
+            if (v < 0x80) {
+                chunk.put((byte) v);
+                break;
+            }
+            chunk.put((byte) (v | 0x80));
+        }
+        chunk.put(b, from, length);
+        return address;
+    }
+
+    private static int readLength(ByteBuffer c, int at) {
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte v = c.get(at++);
+            length |= (v & 0x7F) << shift;
+            if (v >= 0) {
+                return length;
+            }
+        }
+    }
+
+    private static int lengthSize(int length) {
+        return length < 1 << 7 ? 1 : length < 1 << 14 ? 2 : length < 1 << 21 ? 3 : 4;
+    }
+
+    // Arena addresses in order: the first record, and the one after a record, or -1.
+    private long first() {
+        return count == 0 ? -1 : 0;
+    }
+
+    private long next(long address) {
+        int index = (int) (address >>> CHUNK_BITS);
+        ByteBuffer c = chunks.get(index);
+        int at = (int) (address & ((1 << CHUNK_BITS) - 1));
+        int length = readLength(c, at + 8);
+        at += 8 + lengthSize(length) + length;
+        // each chunk's position is where its records end
+        if (at < c.position()) {
+            return ((long) index << CHUNK_BITS) | at;
+        }
+        return index + 1 < chunks.size() ? (long) (index + 1) << CHUNK_BITS : -1;
+    }
+
+    private void grow() {
+        if (old != null) {
+            migrate(toMigrate);
+        }
+        old = table;
+        table = new Table(old.capacity * 2);
+        migrating = first();
+        toMigrate = count;
+    }
+
+    // Moves up to n keys from the old table to the new one, in arena order.
+    private void migrate(long n) {
+        long mask = table.capacity - 1;
+        for (n = Math.min(n, toMigrate); n > 0; n--) {
+            ByteBuffer c = chunks.get((int) (migrating >>> CHUNK_BITS));
+            long hash = c.getLong((int) (migrating & ((1 << CHUNK_BITS) - 1)));
+            long slot = table.home(hash);
+            while (table.get(slot) != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table.set(slot, fingerprint(hash) | (migrating + 1));
+            migrating = next(migrating);
+            toMigrate--;
+        }
+        if (toMigrate == 0) {
+            old = null;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.collections;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/*
+ Exact dedup of generated words, LinkedHashSet<String> against OffHeapStringSet:
+
+    adds/s     throughput, including making a String per word for the LinkedHashSet
+               (as FindDups does) and nothing for the off-heap set, which takes bytes
+    max add    the slowest single add, including garbage collections: a LinkedHashSet
+               also rehashes its whole table when it grows, the off-heap set moves a
+               couple of keys per add instead
+    heap       heap in use after a full GC, with the set still reachable
+    off-heap   direct memory held by the set
+    GC         collections and time spent in them while adding
+
+ Each set runs in its own JVM if asked for by name, which gives the cleanest numbers:
+
+ Usage: OffHeapStringSetBenchmark [words [distinct]] [linked|offheap]
+ */
+public class OffHeapStringSetBenchmark {
+
+    public static void main(String[] args) {
+        long words = args.length > 0 ? Long.parseLong(args[0]) : 20_000_000;
+        long distinct = args.length > 1 ? Long.parseLong(args[1]) : words / 2;
+        String which = args.length > 2 ? args[2] : "both";
+
+        System.out.printf("%,d words, %,d distinct%n", words, distinct);
+        if (!which.equals("offheap")) {
+            run("LinkedHashSet", words, distinct, false);
+        }
+        if (!which.equals("linked")) {
+            run("OffHeapStringSet", words, distinct, true);
+        }
+    }
+
+    private static void run(String name, long words, long distinct, boolean offHeap) {
+        System.gc();
+        long heapBefore = usedHeap();
+        long gcCountBefore = gcCount(), gcTimeBefore = gcTime();
+
+        Set<String> linked = offHeap ? null : new LinkedHashSet<>();
+        OffHeapStringSet set = offHeap ? new OffHeapStringSet() : null;
+        byte[] word = new byte[32];
+        long maxAdd = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < words; i++) {
+            int length = word(i % distinct * 0x9E3779B97F4A7C15L, word);
+            long t = System.nanoTime();
+            if (offHeap) {
+                set.add(word, 0, length);
+            } else {
+                linked.add(new String(word, 0, length, StandardCharsets.UTF_8));
+            }
+            maxAdd = Math.max(maxAdd, System.nanoTime() - t);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long gcs = gcCount() - gcCountBefore, gcMillis = gcTime() - gcTimeBefore;
+
+        System.gc();
+        long heap = Math.max(0, usedHeap() - heapBefore);
+        long size = offHeap ? set.count() : linked.size();
+        long direct = offHeap ? set.offHeapBytes() : directMemory();
+        System.out.printf("%-18s %,12.0f adds/s   max add %,8.1f ms   heap %,6d MB (%,4d bytes/key)   "
+                        + "off-heap %,6d MB (%,4d bytes/key)   %,d GCs, %,d ms%n",
+                name, words / seconds, maxAdd / 1e6, heap >> 20, heap / size,
+                direct >> 20, direct / size, gcs, gcMillis);
+        if (size != distinct) {
+            throw new AssertionError(name + " holds " + size + " words, expected " + distinct);
+        }
+    }
+
+    // A word like "w4f1c9a2e07d35b86" from a number, into b; returns its length.
+    private static int word(long n, byte[] b) {
+        b[0] = 'w';
+        int length = 1;
+        for (long v = n; v != 0 || length == 1; v >>>= 4) {
+            b[length++] = (byte) "0123456789abcdef".charAt((int) (v & 15));
+        }
+        return length;
+    }
+
+    private static long usedHeap() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemory() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            n += gc.getCollectionCount();
+        }
+        return n;
+    }
+
+    private static long gcTime() {
+        long ms = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ms += gc.getCollectionTime();
+        }
+        return ms;
+    }
+}
@@ -9,6 +9,8 @@ public class OracleQuestions1 {
         System.out.println("Input args: " + Arrays.asList(args));
         Question1(args);
         FindDupsAnswer(args);
+        FindDupsApproximate(args);
+        FindDupsIgnoreCase(args);
         TrimStrings(Arrays.asList(args));
         System.out.println("Input args at end: " + Arrays.asList(args));
 
@@ -64,6 +66,30 @@ public class OracleQuestions1 {
         System.out.println(s.size() + " distinct words: " + s);
     }
 
+    /* FindDupsAnswer with a hash set instead of a TreeSet: each word is case-folded once
+       and hashed, so an add is O(1) rather than log n compareToIgnoreCase calls. The
+       first spelling of a word is kept, as in the TreeSet; the sorted list is only
+       built here, for printing.
+     */
+    public static void FindDupsIgnoreCase(String[] args) {
+        CaseInsensitiveSet s = new CaseInsensitiveSet();
+        for (String a : args)
+            s.add(a);
+        System.out.println(s.size() + " distinct words: " + s.sorted());
+    }
+
+    /* FindDups without keeping the words: a HyperLogLog sketch estimates how many distinct
+       words there are in a fixed 4 KB, however many there are. Only the count comes back,
+       not the words. For a few words it is usually exact, for millions it is within
+       about 1.6%. For words from files or stdin see FindDups --count --approx.
+     */
+    public static void FindDupsApproximate(String[] args) {
+        HyperLogLog s = new HyperLogLog();
+        for (String a : args)
+            s.add(a);
+        System.out.println("about " + s.cardinality() + " distinct words");
+    }
+
     /* Write a method that takes a List<String> and applies String.trim to each element.
 
     Key learning point: mutating collection items while iterating.
@@ -1,14 +1,22 @@
 package com.example.collections;
 
-import java.io.BufferedReader;
+import com.example.io.BlockCompressedLineReader;
+import com.example.io.FastLineReader;
+import com.example.io.LineIndex;
+import com.example.io.LineView;
+import com.example.io.MappedLineReader;
+import com.example.io.ParallelLineProcessor;
+
 import java.io.IOException;
-import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /* Question:
@@ -18,6 +26,19 @@ import java.util.stream.Collectors;
  specified by the second command line argument. Write the program so that a correctly-sized
  collection is allocated all at once, instead of being gradually expanded as the file is read in.
 
+ Usage: OracleQuestions3 file numRandoms [shuffle|reservoir|weighted|parallel|indexed|compressed]
+
+ shuffle    the answer to the question: read everything, shuffle, print the first few
+ reservoir  one pass with ReservoirSampler, keeping only numRandoms lines in memory and
+            only turning the sampled lines into Strings
+ weighted   like reservoir, but a line's chance of being picked is proportional to its
+            length (WeightedReservoirSampler)
+ parallel   reservoir sampling of each chunk on all cores, merged at the end
+ indexed    picks random line numbers and reads just those lines through a LineIndex;
+            the index is built on the first run and reused (or extended) afterwards
+ compressed the file was written by BlockCompressedLineWriter; only the blocks holding
+            the picked lines are decompressed
+
  */
 
 public class OracleQuestions3 {
@@ -27,10 +48,23 @@ public class OracleQuestions3 {
     public static void main(String[] args) {
         String fileName = args[0];
         int  numRandoms = Integer.parseInt(args[1]);
+        String mode = args.length > 2 ? args[2] : "shuffle";
         int capacity = 0;
 
         Path filePath = Paths.get(fileName);
 
+        if (!mode.equals("shuffle")) {
+            try {
+                for (String l : sample(filePath, numRandoms, mode)) {
+                    System.out.println("Line: " + l);
+                }
+            } catch (IOException e) {
+                System.out.println("Failed to read from file");
+                System.exit(1);
+            }
+            return;
+        }
+
 
         try {
             capacity = (int)Files.size(filePath) / AVG_LINE_SIZE;
@@ -41,8 +75,8 @@ public class OracleQuestions3 {
 
         List<String> lines = new ArrayList<>(capacity);
 
-        Charset charset = Charset.forName("US-ASCII");
-        try (BufferedReader reader = Files.newBufferedReader(filePath, charset)) {
+        // the same lines as a US-ASCII BufferedReader, without its CharsetDecoder
+        try (FastLineReader reader = FastLineReader.openAscii(filePath)) {
             String line;
             while ((line = reader.readLine()) != null) {
                 lines.add(line);
@@ -59,4 +93,62 @@ public class OracleQuestions3 {
             System.out.println("Line: " + l);
         }
     }
+
+    static List<String> sample(Path filePath, int numRandoms, String mode) throws IOException {
+        switch (mode) {
+            case "reservoir": {
+                ReservoirSampler<String> sampler = new ReservoirSampler<>(numRandoms);
+                try (MappedLineReader reader = new MappedLineReader(filePath)) {
+                    for (LineView line = reader.next(); line != null; line = reader.next()) {
+                        if (sampler.wantsNext()) {
+                            sampler.offer(line.toString());
+                        } else {
+                            sampler.skip();
+                        }
+                    }
+                }
+                return sampler.sample();
+            }
+            case "weighted": {
+                WeightedReservoirSampler<String> sampler = new WeightedReservoirSampler<>(numRandoms);
+                try (MappedLineReader reader = new MappedLineReader(filePath)) {
+                    for (LineView line = reader.next(); line != null; line = reader.next()) {
+                        sampler.offer(line.toString(), line.length());
+                    }
+                }
+                return sampler.sample();
+            }
+            case "parallel":
+                return new ParallelLineProcessor(filePath).reduce(
+                        () -> new ReservoirSampler<String>(numRandoms),
+                        (sampler, line) -> {
+                            if (sampler.wantsNext()) {
+                                sampler.offer(line.toString());
+                            } else {
+                                sampler.skip();
+                            }
+                        },
+                        ReservoirSampler::merge).sample();
+            case "indexed":
+                try (LineIndex index = LineIndex.open(filePath)) {
+                    long lineCount = index.lineCount();
+                    Set<Long> picked = new LinkedHashSet<>();
+                    Random random = new Random();
+                    while (picked.size() < Math.min(numRandoms, lineCount)) {
+                        picked.add((long) (random.nextDouble() * lineCount));
+                    }
+                    List<String> result = new ArrayList<>(picked.size());
+                    for (long n : picked) {
+                        result.add(index.line(n));
+                    }
+                    return result;
+                }
+            case "compressed":
+                try (BlockCompressedLineReader reader = new BlockCompressedLineReader(filePath)) {
+                    return reader.sample(numRandoms, new Random());
+                }
+            default:
+                throw new IllegalArgumentException("unknown mode: " + mode);
+        }
+    }
 }
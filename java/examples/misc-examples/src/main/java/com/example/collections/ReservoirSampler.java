@@ -0,0 +1,150 @@
+package com.example.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/*
+ Uniform random sample of k items from a stream of unknown length, in one pass and O(k)
+ memory (Li's Algorithm L).
+
+ The classic reservoir algorithm draws a random number for every item. Algorithm L
+ instead computes how many items to skip before the next one that enters the sample;
+ the gaps grow as the stream gets longer, so after n items only about
+ k * (1 + ln(n / k)) of them were ever looked at.
+
+ To take advantage of the skips the caller can ask before building an item:
+
+    if (sampler.wantsNext()) {
+        sampler.offer(line.toString());   // only sampled lines become Strings
+    } else {
+        sampler.skip();
+    }
+
+ offer() on its own also works; it just counts the item when it is not wanted.
+
+ Samplers fed from different parts of a stream can be combined with merge(), which draws
+ from each in proportion to how many items it saw, giving a uniform sample of the union.
+ A merged sampler is a result only: it cannot be fed further.
+ */
+public final class ReservoirSampler<T> {
+
+    private final int k;
+    private final Random random;
+    private final Object[] reservoir;
+    private boolean merged;
+
+    // items seen so far
+    private long count;
+    // index of the next item to go into the reservoir once it is full
+    private long next;
+    private double w;
+
+    public ReservoirSampler(int k) {
+        this(k, new Random());
+    }
+
+    public ReservoirSampler(int k, Random random) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.random = random;
+        this.reservoir = new Object[k];
+    }
+
+    /* True if the next item will be kept, i.e. the caller should build it and offer it. */
+    public boolean wantsNext() {
+        return count < k || count == next;
+    }
+
+    /* Counts an item without looking at it. Only valid when wantsNext() is false. */
+    public void skip() {
+        if (wantsNext()) {
+            throw new IllegalStateException("item " + count + " is part of the sample and must be offered");
+        }
+        count++;
+    }
+
+    public void offer(T item) {
+        if (merged) {
+            throw new IllegalStateException("a merged sampler cannot take more items");
+        }
+        if (count < k) {
+            reservoir[(int) count] = item;
+            if (count == k - 1) {
+                w = Math.exp(Math.log(uniform()) / k);
+                next = count;
+                advance();
+            }
+        } else if (count == next) {
+            reservoir[random.nextInt(k)] = item;
+            w *= Math.exp(Math.log(uniform()) / k);
+            advance();
+        }
+        count++;
+    }
+
+    private void advance() {
+        double gap = Math.floor(Math.log(uniform()) / Math.log(1 - w));
+        // a gap this big means the sample is final for any stream we could read
+        next += gap < Long.MAX_VALUE / 2 ? (long) gap + 1 : Long.MAX_VALUE / 2;
+    }
+
+    /* Uniform in (0, 1]; log() of it is always finite. */
+    private double uniform() {
+        return 1.0 - random.nextDouble();
+    }
+
+    public long count() {
+        return count;
+    }
+
+    /* The sampled items, at most k of them, in no particular order. */
+    @SuppressWarnings("unchecked")
+    public List<T> sample() {
+        int n = (int) Math.min(count, k);
+        return (List<T>) new ArrayList<>(Arrays.asList(reservoir).subList(0, n));
+    }
+
+    /*
+     Uniform sample of everything both samplers saw. Each pick comes from this or the
+     other reservoir with probability proportional to the items that side stands for,
+     which is how a k-sample of the concatenated stream would have been split.
+     */
+    public ReservoirSampler<T> merge(ReservoirSampler<T> other) {
+        if (other.k != k) {
+            throw new IllegalArgumentException("cannot merge samples of size " + k + " and " + other.k);
+        }
+        List<T> a = sample();
+        List<T> b = other.sample();
+        long na = count;
+        long nb = other.count;
+
+        ReservoirSampler<T> result = new ReservoirSampler<>(k, random);
+        int n = (int) Math.min(k, na + nb);
+        for (int i = 0; i < n; i++) {
+            boolean fromA = b.isEmpty() || (!a.isEmpty() && random.nextDouble() * (na + nb) < na);
+            List<T> from = fromA ? a : b;
+            T item = removeRandom(from);
+            result.reservoir[i] = item;
+            if (fromA) {
+                na--;
+            } else {
+                nb--;
+            }
+        }
+        result.count = count + other.count;
+        result.merged = true;
+        return result;
+    }
+
+    private T removeRandom(List<T> list) {
+        int i = random.nextInt(list.size());
+        T item = list.get(i);
+        list.set(i, list.get(list.size() - 1));
+        list.remove(list.size() - 1);
+        return item;
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.collections;
+
+import com.example.io.LineView;
+import com.example.io.ParallelLineProcessor;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*
+ The most frequent words (runs of non-whitespace) in files or standard input, in fixed
+ memory (see HeavyHitters).
+
+ Usage: TopWords [-n show] [-k counters] [--width w] [--depth d] [--every seconds] [file... | -]
+
+ -n       how many words to print (10)
+ -k       how many words the summary tracks (1000); tracking more than are shown
+          makes the ones shown more accurate
+ --every  also print the words so far every so many seconds while reading
+
+ Each file is read on all cores with ParallelLineProcessor. Every worker thread feeds
+ its own summary, under a lock that only the snapshot thread ever contends for. When a
+ file is done, its summaries are merged into one for all the input read so far and
+ dropped, so memory is one summary per worker thread plus that one, however many files
+ there are. A snapshot, and the final result, merge the summaries still being fed into
+ a copy of it.
+ */
+public class TopWords {
+
+    /* One thread's summary. Fed and read under its own lock. */
+    private static final class Partial implements Words.Sink {
+        final HeavyHitters hitters;
+        private byte[] scratch = new byte[256];
+
+        Partial(HeavyHitters hitters) {
+            this.hitters = hitters;
+        }
+
+        void addLine(LineView line) {
+            if (scratch.length < line.length()) {
+                scratch = new byte[Math.max(line.length(), 2 * scratch.length)];
+            }
+            line.copyBytes(scratch, 0);
+            Words.split(scratch, 0, line.length(), true, this);
+        }
+
+        @Override
+        public void word(byte[] b, int from, int to) {
+            hitters.add(b, from, to);
+        }
+    }
+
+    private final int k, width, depth;
+    // guarded by this: the input that is done, merged, and the summaries still being fed
+    private final HeavyHitters done;
+    private final List<Partial> partials = new ArrayList<>();
+
+    TopWords(int k, int width, int depth) {
+        this.k = k;
+        this.width = width;
+        this.depth = depth;
+        this.done = new HeavyHitters(k, width, depth);
+    }
+
+    private Partial newPartial() {
+        Partial p = new Partial(new HeavyHitters(k, width, depth));
+        synchronized (this) {
+            partials.add(p);
+        }
+        return p;
+    }
+
+    // Merges summaries that will not be fed any more into done, and lets go of them.
+    private synchronized void retire(Collection<Partial> finished) {
+        for (Partial p : finished) {
+            synchronized (p) {
+                done.merge(p.hitters);
+            }
+            partials.remove(p);
+        }
+    }
+
+    void addFile(String file) throws IOException {
+        // one summary per worker thread, for this file only
+        Map<Thread, Partial> local = new ConcurrentHashMap<>();
+        try {
+            new ParallelLineProcessor(Paths.get(file)).forEachLine(line -> {
+                Partial p = local.computeIfAbsent(Thread.currentThread(), t -> newPartial());
+                synchronized (p) {
+                    p.addLine(line);
+                }
+            });
+        } finally {
+            retire(local.values());
+        }
+    }
+
+    void addStdin() throws IOException {
+        Partial p = newPartial();
+        try {
+            Words.split(System.in, (b, from, to) -> {
+                synchronized (p) {
+                    p.hitters.add(b, from, to);
+                }
+            });
+        } finally {
+            retire(Collections.singletonList(p));
+        }
+    }
+
+    /* Everything read so far, merged; can be called while the input is being read. */
+    synchronized HeavyHitters snapshot() {
+        HeavyHitters merged = done.copy();
+        for (Partial p : partials) {
+            synchronized (p) {
+                merged.merge(p.hitters);
+            }
+        }
+        return merged;
+    }
+
+    static void print(HeavyHitters hitters, int show) {
+        List<HeavyHitters.Entry> top = hitters.top();
+        for (HeavyHitters.Entry e : top.subList(0, Math.min(show, top.size()))) {
+            System.out.format("%,14d %s%s%n", e.count(), e.word(),
+                    e.error() > 0 ? String.format("  (at least %,d)", e.guaranteed()) : "");
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int show = 10, k = 1000, width = HeavyHitters.DEFAULT_WIDTH, depth = HeavyHitters.DEFAULT_DEPTH;
+        long every = 0;
+        int i = 0;
+        for (; i < args.length && args[i].startsWith("-") && !args[i].equals("-"); i++) {
+            switch (args[i]) {
+                case "-n": show = Integer.parseInt(args[++i]); break;
+                case "-k": k = Integer.parseInt(args[++i]); break;
+                case "--width": width = Integer.parseInt(args[++i]); break;
+                case "--depth": depth = Integer.parseInt(args[++i]); break;
+                case "--every": every = Long.parseLong(args[++i]); break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        TopWords topWords = new TopWords(k, width, depth);
+        long start = System.nanoTime();
+        ScheduledExecutorService timer = null;
+        if (every > 0) {
+            final int n = show;
+            timer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "top-words-snapshot");
+                t.setDaemon(true);
+                return t;
+            });
+            timer.scheduleAtFixedRate(() -> {
+                HeavyHitters snapshot = topWords.snapshot();
+                System.out.format("-- %,d words after %,d s%n", snapshot.total(),
+                        TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+                print(snapshot, n);
+            }, every, every, TimeUnit.SECONDS);
+        }
+
+        if (i == args.length) {
+            topWords.addStdin();
+        }
+        for (; i < args.length; i++) {
+            if (args[i].equals("-")) {
+                topWords.addStdin();
+            } else {
+                topWords.addFile(args[i]);
+            }
+        }
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+
+        HeavyHitters result = topWords.snapshot();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.format("-- %,d words in %.2f s (%,.0f words/s)%n", result.total(), seconds, result.total() / seconds);
+        print(result, show);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/*
+ Weighted random sample of k items from a stream (Efraimidis and Spirakis' A-Res): an item
+ with twice the weight is twice as likely to be picked.
+
+ Every item gets the key u^(1/weight) for a uniform random u, and the sample is the k
+ items with the largest keys, kept in a min-heap so the smallest can be evicted. Keys
+ are compared in log space (ln(u) / weight), which has the same order and does not
+ underflow for large weights.
+
+ Unlike ReservoirSampler there is no skipping: the weight of every item has to be known
+ to decide whether it is in, so every item is looked at anyway.
+
+ Merging is exact: the union of two samples' top-k keys is the top-k of the union.
+ */
+public final class WeightedReservoirSampler<T> {
+
+    private static final class Keyed<T> {
+        final double key;
+        final T item;
+
+        Keyed(double key, T item) {
+            this.key = key;
+            this.item = item;
+        }
+    }
+
+    private final int k;
+    private final Random random;
+    private final PriorityQueue<Keyed<T>> heap;
+    private long count;
+
+    public WeightedReservoirSampler(int k) {
+        this(k, new Random());
+    }
+
+    public WeightedReservoirSampler(int k, Random random) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be positive: " + k);
+        }
+        this.k = k;
+        this.random = random;
+        this.heap = new PriorityQueue<>(k, (a, b) -> Double.compare(a.key, b.key));
+    }
+
+    /* Offers an item; items with a weight of zero or less are never sampled. */
+    public void offer(T item, double weight) {
+        count++;
+        if (!(weight > 0)) {
+            return;
+        }
+        double key = Math.log(1.0 - random.nextDouble()) / weight;
+        if (heap.size() < k) {
+            heap.add(new Keyed<>(key, item));
+        } else if (key > heap.peek().key) {
+            heap.poll();
+            heap.add(new Keyed<>(key, item));
+        }
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public List<T> sample() {
+        List<T> result = new ArrayList<>(heap.size());
+        for (Keyed<T> e : heap) {
+            result.add(e.item);
+        }
+        return result;
+    }
+
+    /* Combines into this sampler and returns it. */
+    public WeightedReservoirSampler<T> merge(WeightedReservoirSampler<T> other) {
+        for (Keyed<T> e : other.heap) {
+            if (heap.size() < k) {
+                heap.add(e);
+            } else if (e.key > heap.peek().key) {
+                heap.poll();
+                heap.add(e);
+            }
+        }
+        count += other.count;
+        return this;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.collections;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ Splits UTF-8 text into words - runs of bytes other than ASCII whitespace - without
+ turning them into Strings. Used by FindDups --count and TopWords.
+ */
+final class Words {
+
+    interface Sink {
+        void word(byte[] b, int from, int to);
+    }
+
+    private Words() {
+    }
+
+    /*
+     Passes the words in b[from, to) to sink. Unless last is set a word running up to
+     'to' may continue in the next buffer, so it is left out and its start is returned.
+     */
+    static int split(byte[] b, int from, int to, boolean last, Sink sink) {
+        int i = from;
+        while (true) {
+            while (i < to && isSpace(b[i])) {
+                i++;
+            }
+            int start = i;
+            while (i < to && !isSpace(b[i])) {
+                i++;
+            }
+            if (i == to && (!last || start == to)) {
+                return start;
+            }
+            sink.word(b, start, i);
+        }
+    }
+
+    /* Passes every word of in to sink, until the end of in, which is not closed. */
+    static void split(InputStream in, Sink sink) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int kept = 0;
+        for (int n; (n = in.read(buffer, kept, buffer.length - kept)) >= 0; ) {
+            int end = kept + n;
+            int unfinished = split(buffer, 0, end, false, sink);
+            kept = end - unfinished;
+            System.arraycopy(buffer, unfinished, buffer, 0, kept);
+            if (kept == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+        }
+        split(buffer, 0, kept, true, sink);
+    }
+
+    private static boolean isSpace(byte c) {
+        return c == ' ' || (c >= '\t' && c <= '\r');
+    }
+}
@@ -66,6 +66,9 @@ public class BadThreads {
         To achieve that you can
             a) encapsulate `message` in it's own class and change it only through synchronised methods, or
             b) declare message to be volatile.
+
+        BadThreadsStress runs this publication millions of times with each fix (and a few
+        VarHandle modes) and reports what the reader saw and what each one costs.
          */
         c.join();
         Thread.sleep(1000);
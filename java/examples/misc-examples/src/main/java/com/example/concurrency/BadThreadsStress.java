@@ -0,0 +1,281 @@
+package com.example.concurrency;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/*
+ Stress version of the BadThreads question.
+
+ BadThreads publishes `message` from one thread and reads it from another, and the
+ answer to the question is "make it volatile or synchronized". This harness runs that
+ publication millions of times, jcstress style, to see what actually goes wrong without
+ it and what each fix costs.
+
+ Each trial publishes a freshly built Message (text set in a plain field, then the
+ reference stored in a shared slot) while the other thread reads the slot. The reader
+ classifies what it saw:
+
+    NOT_YET     the reference was not visible yet - always allowed
+    SEEN        the reference and its text were visible - always allowed
+    TORN        the reference was visible but the text was still null - the
+                publication was unsafe; only allowed by the plain and opaque variants
+
+ Variants:
+    plain            ordinary field, no ordering at all
+    volatile         volatile field
+    synchronized     getter and setter synchronized on the slot
+    release/acquire  VarHandle setRelease/getAcquire - enough for safe publication and
+                     cheaper than volatile, because it does not need a full fence
+    opaque           VarHandle setOpaque/getOpaque - the write is eventually visible but
+                     nothing orders the text write before it
+
+ After the stress runs, each variant's publish and read are timed on a single thread
+ to give a per-operation cost. Note that x86 never reorders two stores, so TORN is rare
+ there even for plain fields (it needs the JIT to reorder them); on ARM it shows up much
+ more readily. A zero count is not proof of safety; a non-zero count is proof of a bug.
+
+ Usage: BadThreadsStress [trials per variant]
+ */
+public class BadThreadsStress {
+
+    static final String TEXT = "Mares do eat oats.";
+    static final int BATCH = 10_000;
+
+    enum Outcome {
+        NOT_YET, SEEN, TORN
+    }
+
+    static final class Message {
+        String text;
+    }
+
+    static final class PlainSlot {
+        Message message;
+    }
+
+    static final class VolatileSlot {
+        volatile Message message;
+    }
+
+    static final class LockedSlot {
+        private Message message;
+
+        synchronized void set(Message m) {
+            message = m;
+        }
+
+        synchronized Message get() {
+            return message;
+        }
+    }
+
+    static final VarHandle MESSAGE;
+
+    static {
+        try {
+            MESSAGE = MethodHandles.lookup().findVarHandle(PlainSlot.class, "message", Message.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /* One way of publishing a Message through a batch of slots. */
+    abstract static class Variant {
+        final String name;
+
+        Variant(String name) {
+            this.name = name;
+        }
+
+        /* Replaces the slots with a fresh, empty batch. */
+        abstract void reset(int size);
+
+        abstract void publish(int i, Message m);
+
+        abstract Message read(int i);
+    }
+
+    abstract static class PlainSlots extends Variant {
+        PlainSlot[] slots;
+
+        PlainSlots(String name) {
+            super(name);
+        }
+
+        void reset(int size) {
+            slots = new PlainSlot[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new PlainSlot();
+            }
+        }
+    }
+
+    static Variant[] variants() {
+        return new Variant[] {
+                new PlainSlots("plain") {
+                    void publish(int i, Message m) {
+                        slots[i].message = m;
+                    }
+
+                    Message read(int i) {
+                        return slots[i].message;
+                    }
+                },
+                new Variant("volatile") {
+                    VolatileSlot[] slots;
+
+                    void reset(int size) {
+                        slots = new VolatileSlot[size];
+                        for (int i = 0; i < size; i++) {
+                            slots[i] = new VolatileSlot();
+                        }
+                    }
+
+                    void publish(int i, Message m) {
+                        slots[i].message = m;
+                    }
+
+                    Message read(int i) {
+                        return slots[i].message;
+                    }
+                },
+                new Variant("synchronized") {
+                    LockedSlot[] slots;
+
+                    void reset(int size) {
+                        slots = new LockedSlot[size];
+                        for (int i = 0; i < size; i++) {
+                            slots[i] = new LockedSlot();
+                        }
+                    }
+
+                    void publish(int i, Message m) {
+                        slots[i].set(m);
+                    }
+
+                    Message read(int i) {
+                        return slots[i].get();
+                    }
+                },
+                new PlainSlots("release/acquire") {
+                    void publish(int i, Message m) {
+                        MESSAGE.setRelease(slots[i], m);
+                    }
+
+                    Message read(int i) {
+                        return (Message) MESSAGE.getAcquire(slots[i]);
+                    }
+                },
+                new PlainSlots("opaque") {
+                    void publish(int i, Message m) {
+                        MESSAGE.setOpaque(slots[i], m);
+                    }
+
+                    Message read(int i) {
+                        return (Message) MESSAGE.getOpaque(slots[i]);
+                    }
+                }
+        };
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        long trials = args.length > 0 ? Long.parseLong(args[0]) : 5_000_000;
+
+        System.out.format("%-16s %12s %12s %8s %12s %12s%n",
+                "variant", "NOT_YET", "SEEN", "TORN", "publish ns", "read ns");
+        for (Variant v : variants()) {
+            Map<Outcome, Long> outcomes = stress(v, trials);
+            cost(v, trials / 10); // warm up
+            double[] cost = cost(v, trials);
+            System.out.format("%-16s %,12d %,12d %,8d %12.2f %12.2f%n", v.name,
+                    outcomes.get(Outcome.NOT_YET), outcomes.get(Outcome.SEEN), outcomes.get(Outcome.TORN),
+                    cost[0], cost[1]);
+        }
+    }
+
+    /*
+     Runs the writer and reader over batches of slots. Both threads wait on a barrier at
+     the start of each batch so they race over the same slots.
+     */
+    static Map<Outcome, Long> stress(Variant v, long trials) throws InterruptedException {
+        long batches = Math.max(1, trials / BATCH);
+        long[] counts = new long[Outcome.values().length];
+        CyclicBarrier start = new CyclicBarrier(2, () -> v.reset(BATCH));
+        CyclicBarrier end = new CyclicBarrier(2);
+
+        Thread writer = new Thread(() -> {
+            try {
+                for (long b = 0; b < batches; b++) {
+                    start.await();
+                    for (int i = 0; i < BATCH; i++) {
+                        Message m = new Message();
+                        m.text = TEXT;
+                        v.publish(i, m);
+                    }
+                    end.await();
+                }
+            } catch (InterruptedException | BrokenBarrierException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        writer.start();
+        try {
+            for (long b = 0; b < batches; b++) {
+                start.await();
+                for (int i = 0; i < BATCH; i++) {
+                    counts[classify(v.read(i)).ordinal()]++;
+                }
+                end.await();
+            }
+        } catch (BrokenBarrierException e) {
+            throw new IllegalStateException(e);
+        }
+        writer.join();
+
+        Map<Outcome, Long> result = new EnumMap<>(Outcome.class);
+        for (Outcome o : Outcome.values()) {
+            result.put(o, counts[o.ordinal()]);
+        }
+        return result;
+    }
+
+    static Outcome classify(Message m) {
+        if (m == null) {
+            return Outcome.NOT_YET;
+        }
+        return m.text == null ? Outcome.TORN : Outcome.SEEN;
+    }
+
+    /* Single-threaded ns per publish and per read, averaged over the trials. */
+    static double[] cost(Variant v, long trials) {
+        long batches = Math.max(1, trials / BATCH);
+        Message m = new Message();
+        m.text = TEXT;
+        long publishNanos = 0;
+        long readNanos = 0;
+        long sink = 0;
+        for (long b = 0; b < batches; b++) {
+            v.reset(BATCH);
+            long t0 = System.nanoTime();
+            for (int i = 0; i < BATCH; i++) {
+                v.publish(i, m);
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < BATCH; i++) {
+                sink += v.read(i) == m ? 1 : 0;
+            }
+            long t2 = System.nanoTime();
+            publishNanos += t1 - t0;
+            readNanos += t2 - t1;
+        }
+        if (sink != batches * BATCH) {
+            throw new IllegalStateException("lost a write");
+        }
+        double ops = (double) batches * BATCH;
+        return new double[] {publishNanos / ops, readNanos / ops};
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.concurrency.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/*
+ Generalises the Producer/Consumer pair to a chain of stages:
+
+    Pipeline.from("read", lines)
+            .map("parse", Record::parse, StageOptions.cheap())
+            .map("enrich", this::lookup, StageOptions.parallel(8).withQueueCapacity(256))
+            .to("store", db::insert, StageOptions.parallel(2))
+            .run();
+
+ Every non-cheap stage gets its own threads and a bounded queue in front of it; cheap
+ stages are fused onto the threads of the stage before them. A map function returning
+ null drops the item.
+
+ Each call returns a new Pipeline, so a partially built pipeline can be reused as the
+ start of several others. A source given as an Iterable is asked for a new iterator each
+ time a job runs, so every job built on it reads the whole source; an Iterator can only
+ be read once, and a second job started from it fails.
+ */
+public final class Pipeline<T> {
+
+    /* Definition of one stage; the source stage has no function. */
+    static final class Stage {
+        final String name;
+        final Function<Object, Object> function;
+        final Supplier<? extends Iterator<?>> source;
+        final boolean sink;
+        final StageOptions options;
+
+        Stage(String name, Function<Object, Object> function, Supplier<? extends Iterator<?>> source, boolean sink,
+              StageOptions options) {
+            this.name = name;
+            this.function = function;
+            this.source = source;
+            this.sink = sink;
+            this.options = options;
+        }
+    }
+
+    private final List<Stage> stages;
+
+    private Pipeline(List<Stage> stages) {
+        this.stages = stages;
+    }
+
+    /* The source runs on a single thread; it is the only stage that reads the iterator. */
+    public static <T> Pipeline<T> from(String name, Iterator<T> source) {
+        AtomicBoolean taken = new AtomicBoolean();
+        return start(name, () -> {
+            if (taken.getAndSet(true)) {
+                throw new IllegalStateException("source " + name + " is an Iterator and has been read already");
+            }
+            return source;
+        });
+    }
+
+    public static <T> Pipeline<T> from(String name, Iterable<T> source) {
+        return start(name, source::iterator);
+    }
+
+    private static <T> Pipeline<T> start(String name, Supplier<? extends Iterator<T>> source) {
+        List<Stage> stages = new ArrayList<>();
+        stages.add(new Stage(name, null, source, false, StageOptions.defaults()));
+        return new Pipeline<>(stages);
+    }
+
+    public <R> Pipeline<R> map(String name, Function<? super T, ? extends R> function) {
+        return map(name, function, StageOptions.defaults());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <R> Pipeline<R> map(String name, Function<? super T, ? extends R> function, StageOptions options) {
+        return new Pipeline<>(append(new Stage(name, (Function<Object, Object>) function, null, false, options)));
+    }
+
+    public PipelineJob to(String name, Consumer<? super T> sink) {
+        return to(name, sink, StageOptions.defaults());
+    }
+
+    @SuppressWarnings("unchecked")
+    public PipelineJob to(String name, Consumer<? super T> sink, StageOptions options) {
+        Consumer<Object> s = (Consumer<Object>) sink;
+        Function<Object, Object> f = item -> {
+            s.accept(item);
+            return item;
+        };
+        return new PipelineJob(append(new Stage(name, f, null, true, options)));
+    }
+
+    private List<Stage> append(Stage stage) {
+        List<Stage> copy = new ArrayList<>(stages);
+        copy.add(stage);
+        return Collections.unmodifiableList(copy);
+    }
+}
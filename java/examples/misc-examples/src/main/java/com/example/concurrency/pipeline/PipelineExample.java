@@ -0,0 +1,61 @@
+package com.example.concurrency.pipeline;
+
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ The producer-consumer example as a pipeline:
+
+    messages -> upper (cheap) -> count words (cheap) -> slow (4 threads) -> sink
+
+ "upper" and "count words" are fused onto the source thread, so the job runs as three
+ thread groups. The report printed every second shows "slow" as the busiest stage with a
+ full queue in front of it - the stage to scale up.
+
+ Usage: PipelineExample [messages]
+ */
+public class PipelineExample {
+
+    public static void main(String[] args) throws InterruptedException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        String[] importantInfo = {
+                "Mares eat oats",
+                "Does eat oats",
+                "Little lambs eat ivy",
+                "A kid will eat ivy too"
+        };
+        Iterator<String> source = new Iterator<String>() {
+            int i;
+
+            public boolean hasNext() {
+                return i < messages;
+            }
+
+            public String next() {
+                return importantInfo[i++ % importantInfo.length];
+            }
+        };
+        LongAdder words = new LongAdder();
+
+        PipelineJob job = Pipeline.from("messages", source)
+                .map("upper", s -> s.toUpperCase(Locale.ROOT), StageOptions.cheap())
+                .map("count words", s -> s.split(" ").length, StageOptions.cheap())
+                .map("slow", PipelineExample::slow, StageOptions.parallel(4).withQueueCapacity(256))
+                .to("sink", words::add);
+
+        job.run(1, TimeUnit.SECONDS);
+        System.out.print(job.report());
+        System.out.println(job.segmentCount() + " segments, " + words.sum() + " words");
+    }
+
+    /* Stands in for real per-message work. */
+    static int slow(int n) {
+        long x = n;
+        for (int i = 0; i < 20_000; i++) {
+            x = x * 6364136223846793005L + 1442695040888963407L;
+        }
+        return x == 42 ? n + 1 : n;
+    }
+}
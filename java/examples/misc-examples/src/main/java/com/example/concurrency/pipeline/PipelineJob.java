@@ -0,0 +1,232 @@
+package com.example.concurrency.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/*
+ A complete pipeline, ready to run once.
+
+ Stages are grouped into segments: a segment starts at the source or at a non-cheap
+ stage and takes in every cheap stage that follows it. Each segment has its own worker
+ threads and, except for the source, a bounded input queue. Inside a segment an item
+ goes through the fused stages as plain method calls.
+
+ End of stream is a private marker object. A worker that takes it puts it back for its
+ siblings and stops; the last worker of a segment to stop passes it on downstream.
+
+ If any stage throws, every worker is interrupted and run() rethrows the first failure.
+ Interrupting the thread in run() cancels the job the same way: the workers are
+ interrupted, and run() waits for them to stop and throws InterruptedException.
+ */
+public final class PipelineJob {
+
+    private static final Object END_OF_STREAM = new Object();
+
+    private static final class Segment {
+        final List<Pipeline.Stage> stages = new ArrayList<>();
+        final List<StageStats> stats = new ArrayList<>();
+        final int threads;
+        final BlockingQueue<Object> input;
+        BlockingQueue<Object> output;
+        AtomicInteger running;
+
+        Segment(int threads, BlockingQueue<Object> input) {
+            this.threads = threads;
+            this.input = input;
+        }
+    }
+
+    private final List<Segment> segments = new ArrayList<>();
+    private final List<StageStats> stats = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile long startNanos;
+    private volatile long endNanos;
+
+    PipelineJob(List<Pipeline.Stage> stages) {
+        Segment current = null;
+        for (Pipeline.Stage stage : stages) {
+            if (current == null) {
+                current = new Segment(1, null);
+                segments.add(current);
+            } else if (!stage.options.isCheap()) {
+                Segment next = new Segment(stage.options.parallelism(),
+                        new ArrayBlockingQueue<Object>(stage.options.queueCapacity()));
+                current.output = next.input;
+                current = next;
+                segments.add(current);
+            }
+            StageStats s = new StageStats(stage.name, current.stages.isEmpty() ? stage.name : current.stages.get(0).name,
+                    current.threads);
+            current.stages.add(stage);
+            current.stats.add(s);
+            stats.add(s);
+        }
+    }
+
+    public List<StageStats> stats() {
+        return Collections.unmodifiableList(stats);
+    }
+
+    /* Number of thread groups the stages were fused into. */
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public void run() throws InterruptedException {
+        run(0, TimeUnit.MILLISECONDS);
+    }
+
+    /* Runs to completion, printing report() every interval (never if interval is 0). */
+    public synchronized void run(long interval, TimeUnit unit) throws InterruptedException {
+        if (startNanos != 0) {
+            throw new IllegalStateException("a pipeline job can only run once");
+        }
+        startNanos = System.nanoTime();
+        for (Segment segment : segments) {
+            segment.running = new AtomicInteger(segment.threads);
+            for (int i = 0; i < segment.threads; i++) {
+                Thread t = new Thread(() -> work(segment), "pipeline-" + segment.stages.get(0).name + "-" + i);
+                workers.add(t);
+            }
+        }
+        workers.forEach(Thread::start);
+
+        long intervalMillis = unit.toMillis(interval);
+        try {
+            for (Thread t : workers) {
+                while (t.isAlive()) {
+                    t.join(intervalMillis);
+                    if (intervalMillis > 0 && t.isAlive()) {
+                        System.out.print(report());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+            throw e;
+        }
+        endNanos = System.nanoTime();
+        // only end-of-stream markers are left; don't report them as backlog
+        for (Segment segment : segments) {
+            if (segment.input != null) {
+                segment.input.clear();
+            }
+        }
+
+        Throwable t = failure.get();
+        if (t != null) {
+            throw new IllegalStateException("pipeline failed: " + t, t);
+        }
+    }
+
+    // Stops every worker and waits for them, without giving up on an interrupt.
+    private void cancel() {
+        workers.forEach(Thread::interrupt);
+        boolean interrupted = false;
+        for (Thread t : workers) {
+            while (t.isAlive()) {
+                try {
+                    t.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        endNanos = System.nanoTime();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void work(Segment segment) {
+        try {
+            if (segment.input == null) {
+                runSource(segment);
+            } else {
+                for (Object item = segment.input.take(); item != END_OF_STREAM; item = segment.input.take()) {
+                    process(segment, 0, item);
+                }
+                // let the other workers of this segment see it too
+                segment.input.put(END_OF_STREAM);
+            }
+            if (segment.running.decrementAndGet() == 0 && segment.output != null) {
+                segment.output.put(END_OF_STREAM);
+            }
+        } catch (InterruptedException e) {
+            // another worker failed and stopped the job
+        } catch (RuntimeException | Error e) {
+            if (failure.compareAndSet(null, e)) {
+                workers.forEach(Thread::interrupt);
+            }
+        }
+    }
+
+    private void runSource(Segment segment) throws InterruptedException {
+        Iterator<?> source = segment.stages.get(0).source.get();
+        StageStats s = segment.stats.get(0);
+        for (;;) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long start = System.nanoTime();
+            if (!source.hasNext()) {
+                break;
+            }
+            Object item = source.next();
+            s.busyNanos.add(System.nanoTime() - start);
+            s.in.increment();
+            s.out.increment();
+            process(segment, 1, item);
+        }
+    }
+
+    /* Runs the item through the fused stages from index `from`, then hands it downstream. */
+    private void process(Segment segment, int from, Object item) throws InterruptedException {
+        for (int i = from; i < segment.stages.size(); i++) {
+            StageStats s = segment.stats.get(i);
+            s.in.increment();
+            long start = System.nanoTime();
+            item = segment.stages.get(i).function.apply(item);
+            s.busyNanos.add(System.nanoTime() - start);
+            if (item == null) {
+                return;
+            }
+            s.out.increment();
+        }
+        if (segment.output != null) {
+            segment.output.put(item);
+        }
+    }
+
+    /*
+     One line per stage. busy% is the share of the stage's threads' time spent in its own
+     function: the stage closest to 100% is the bottleneck. backlog is the number of
+     items waiting in the queue in front of the stage ("-" for fused stages and the
+     source, which have none).
+     */
+    public String report() {
+        long end = endNanos != 0 ? endNanos : System.nanoTime();
+        double seconds = Math.max(1e-9, (end - startNanos) / 1e9);
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-16s %-16s %7s %12s %12s %12s %6s %8s%n",
+                "stage", "segment", "threads", "in", "out", "out/sec", "busy%", "backlog"));
+        for (Segment segment : segments) {
+            for (int i = 0; i < segment.stages.size(); i++) {
+                StageStats s = segment.stats.get(i);
+                String backlog = i == 0 && segment.input != null ? String.valueOf(segment.input.size()) : "-";
+                double busy = 100.0 * s.busyNanos() / (seconds * 1e9 * s.threads());
+                sb.append(String.format("%-16s %-16s %7d %,12d %,12d %,12.0f %6.1f %8s%n",
+                        s.name(), s.segment(), s.threads(), s.in(), s.out(), s.out() / seconds, busy, backlog));
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.concurrency.pipeline;
+
+/*
+ How a pipeline stage is run:
+
+    parallelism    number of threads running the stage
+    queueCapacity  size of the bounded queue in front of the stage; when it is full the
+                   upstream stage blocks, which is what keeps memory bounded
+    cheap          the stage does so little work that handing each item to another
+                   thread would cost more than the work itself. A cheap stage is fused
+                   into the stage before it: it runs on the same threads, straight after
+                   it, with no queue in between - and its own parallelism and queue
+                   capacity are ignored.
+
+ Immutable; the with-methods return a modified copy.
+ */
+public final class StageOptions {
+
+    private static final StageOptions DEFAULTS = new StageOptions(1, 1024, false);
+
+    private final int parallelism;
+    private final int queueCapacity;
+    private final boolean cheap;
+
+    private StageOptions(int parallelism, int queueCapacity, boolean cheap) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        }
+        this.parallelism = parallelism;
+        this.queueCapacity = queueCapacity;
+        this.cheap = cheap;
+    }
+
+    public static StageOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public static StageOptions parallel(int parallelism) {
+        return DEFAULTS.withParallelism(parallelism);
+    }
+
+    public static StageOptions cheap() {
+        return new StageOptions(1, DEFAULTS.queueCapacity, true);
+    }
+
+    public StageOptions withParallelism(int parallelism) {
+        return new StageOptions(parallelism, queueCapacity, cheap);
+    }
+
+    public StageOptions withQueueCapacity(int queueCapacity) {
+        return new StageOptions(parallelism, queueCapacity, cheap);
+    }
+
+    public int parallelism() {
+        return parallelism;
+    }
+
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    public boolean isCheap() {
+        return cheap;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.concurrency.pipeline;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Live counters for one stage. Updated by the stage's worker threads, readable at any time
+ from any thread.
+
+ busy time is the time spent inside the stage's own function, so for fused stages it
+ still tells which of them is the expensive one.
+ */
+public final class StageStats {
+
+    private final String name;
+    private final String segment;
+    private final int threads;
+    final LongAdder in = new LongAdder();
+    final LongAdder out = new LongAdder();
+    final LongAdder busyNanos = new LongAdder();
+
+    StageStats(String name, String segment, int threads) {
+        this.name = name;
+        this.segment = segment;
+        this.threads = threads;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /* Name of the first stage of the fused group this stage runs in. */
+    public String segment() {
+        return segment;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public long in() {
+        return in.sum();
+    }
+
+    public long out() {
+        return out.sum();
+    }
+
+    public long busyNanos() {
+        return busyNanos.sum();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.Arrays;
+
+/*
+ A group of messages handed over the queue in one put/take.
+
+ END_OF_STREAM replaces the "DONE" poison pill: the consumer recognises it by identity,
+ once per batch, instead of doing a String.equals on every message - and a real message
+ can no longer be mistaken for the end of the stream.
+ */
+public final class Batch {
+
+    public static final Batch END_OF_STREAM = new Batch(new String[0], 0);
+
+    private final String[] messages;
+    private final int size;
+
+    /* The batch takes ownership of the array; callers must not modify it afterwards. */
+    Batch(String[] messages, int size) {
+        this.messages = messages;
+        this.size = size;
+    }
+
+    public static Batch of(String... messages) {
+        return new Batch(messages.clone(), messages.length);
+    }
+
+    public boolean isEndOfStream() {
+        return this == END_OF_STREAM;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(int i) {
+        if (i >= size) {
+            throw new IndexOutOfBoundsException("index " + i + ", size " + size);
+        }
+        return messages[i];
+    }
+
+    @Override
+    public String toString() {
+        return isEndOfStream() ? "END_OF_STREAM" : Arrays.toString(Arrays.copyOf(messages, size));
+    }
+}
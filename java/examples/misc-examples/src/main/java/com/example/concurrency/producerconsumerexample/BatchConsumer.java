@@ -0,0 +1,80 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+
+/*
+ Batching counterpart of Consumer.
+
+ Each wakeup blocks in take() for the first batch and then uses drainTo to pick up
+ whatever else is already queued, up to maxBatches batches (so at most maxBatches times
+ the producer's batch size messages), without blocking again. All the messages from a
+ wakeup are handed to the handler, and the default handler prints them with a single
+ write instead of one System.out.format per message.
+
+ The stream ends at Batch.END_OF_STREAM; anything drained after it is ignored.
+ */
+public class BatchConsumer implements Runnable {
+
+    private final BlockingQueue<Batch> queue;
+    private final int maxBatches;
+    private final Consumer<List<Batch>> handler;
+
+    private long received;
+
+    public BatchConsumer(BlockingQueue<Batch> queue, int maxBatches) {
+        this(queue, maxBatches, BatchConsumer::print);
+    }
+
+    public BatchConsumer(BlockingQueue<Batch> queue, int maxBatches, Consumer<List<Batch>> handler) {
+        if (maxBatches < 1) {
+            throw new IllegalArgumentException("maxBatches must be positive: " + maxBatches);
+        }
+        this.queue = queue;
+        this.maxBatches = maxBatches;
+        this.handler = handler;
+    }
+
+    /* Number of messages handled so far. */
+    public long received() {
+        return received;
+    }
+
+    public void run() {
+        List<Batch> drained = new ArrayList<>(maxBatches);
+        try {
+            boolean done = false;
+            while (!done) {
+                drained.add(queue.take());
+                queue.drainTo(drained, maxBatches - 1);
+
+                int end = drained.indexOf(Batch.END_OF_STREAM);
+                if (end >= 0) {
+                    drained.subList(end, drained.size()).clear();
+                    done = true;
+                }
+                for (Batch b : drained) {
+                    received += b.size();
+                }
+                if (!drained.isEmpty()) {
+                    handler.accept(drained);
+                }
+                drained.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void print(List<Batch> batches) {
+        StringBuilder out = new StringBuilder();
+        for (Batch b : batches) {
+            for (int i = 0; i < b.size(); i++) {
+                out.append("MESSAGE RECEIVED: ").append(b.get(i)).append(System.lineSeparator());
+            }
+        }
+        System.out.print(out);
+    }
+}
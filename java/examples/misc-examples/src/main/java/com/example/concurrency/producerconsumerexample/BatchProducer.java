@@ -0,0 +1,104 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+ Batching counterpart of Producer.
+
+ Messages are collected into a Batch and the whole batch goes onto the queue with a single
+ put, so the cost of the handoff (lock, park/unpark of the consumer) is paid once per
+ batch instead of once per message. A batch is published when
+    - it holds batchSize messages, or
+    - its oldest message has waited longer than the linger time, or
+    - flush()/close() is called.
+ The linger time bounds the extra latency batching adds when messages arrive slowly. It
+ is checked whenever a message is published, so a caller that may go idle with a partial
+ batch should call flush() itself.
+
+ publish(String[]) hands a whole array over at once; if it is at least batchSize long it
+ bypasses the buffer and goes onto the queue as is.
+
+ Not thread safe: use one BatchProducer per producing thread.
+ */
+public class BatchProducer implements Runnable {
+
+    private final BlockingQueue<Batch> queue;
+    private final int batchSize;
+    private final long lingerNanos;
+
+    private String[] pending;
+    private int count;
+    private long oldestNanos;
+
+    private String[] demoMessages = {
+            "Mares eat oats",
+            "Does eat oats",
+            "Little lambs eat ivy",
+            "A kid will eat ivy too"
+    };
+
+    public BatchProducer(BlockingQueue<Batch> queue, int batchSize, long linger, TimeUnit unit) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.queue = queue;
+        this.batchSize = batchSize;
+        this.lingerNanos = unit.toNanos(linger);
+        this.pending = new String[batchSize];
+    }
+
+    /* Uses the given messages for run() instead of the built-in ones. */
+    public BatchProducer withMessages(String... messages) {
+        this.demoMessages = messages.clone();
+        return this;
+    }
+
+    public void publish(String message) throws InterruptedException {
+        if (count == 0) {
+            oldestNanos = System.nanoTime();
+        }
+        pending[count++] = message;
+        if (count == batchSize || System.nanoTime() - oldestNanos >= lingerNanos) {
+            flush();
+        }
+    }
+
+    public void publish(String... messages) throws InterruptedException {
+        if (messages.length >= batchSize) {
+            flush();
+            queue.put(Batch.of(messages));
+            return;
+        }
+        for (String m : messages) {
+            publish(m);
+        }
+    }
+
+    public void flush() throws InterruptedException {
+        if (count == 0) {
+            return;
+        }
+        queue.put(new Batch(pending, count));
+        // the batch now owns the old array
+        pending = new String[batchSize];
+        count = 0;
+    }
+
+    /* Publishes whatever is buffered, followed by the end-of-stream marker. */
+    public void close() throws InterruptedException {
+        flush();
+        queue.put(Batch.END_OF_STREAM);
+    }
+
+    public void run() {
+        try {
+            for (String message : demoMessages) {
+                publish(message);
+            }
+            close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -31,46 +31,208 @@ package com.example.concurrency.producerconsumerexample;
  * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+ Rebuilt from the tutorial version, which waited on the object's own monitor, swallowed
+ InterruptedException and woke every waiting producer and consumer with notifyAll().
+
+ The message slot is an AtomicReference: null means empty. put claims an empty slot with a
+ CAS, take clears a full one. How a thread waits when the slot is in the wrong state is
+ chosen per Drop with a WaitStrategy:
+
+    BLOCKING         park on a Condition - notEmpty for takers, notFull for putters - so
+                     a put only wakes a taker and a take only wakes a putter. Cheapest on
+                     CPU, slowest handoff (an unpark plus a context switch).
+    SPIN_THEN_YIELD  spin briefly, then Thread.yield() between checks. Good latency while
+                     keeping the core available to other threads.
+    BUSY_SPIN        never give up the core. Lowest latency, but only sensible when both
+                     sides are pinned to their own cores; on an oversubscribed box the
+                     other side may not get to run until the scheduler preempts us.
+
+ The lock is only taken on the BLOCKING path, and only when someone is actually waiting,
+ so a handoff between two busy threads never touches it.
+
+ All waits respond to interruption by throwing InterruptedException.
+ */
 public class Drop {
-    // Message sent from producer
-    // to consumer.
-    private String message;
-    // True if consumer should wait
-    // for producer to send message,
-    // false if producer should wait for
-    // consumer to retrieve message.
-    private boolean empty = true;
-
-    public synchronized String take() {
-        // Wait until message is
-        // available.
-        while (empty) {
-            try {
-                wait();
-            } catch (InterruptedException e) {}
+
+    public enum WaitStrategy {
+        BLOCKING, SPIN_THEN_YIELD, BUSY_SPIN
+    }
+
+    private static final int SPIN_TRIES = 100;
+    // deadline used by put/take, which wait for as long as it takes
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    private final WaitStrategy strategy;
+    // Message sent from producer to consumer; null while the drop is empty.
+    private final AtomicReference<String> slot = new AtomicReference<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    // Threads parked on each condition. Written under the lock, read without it so a
+    // successful put/take can skip locking when nobody needs a signal.
+    private volatile int waitingTakers;
+    private volatile int waitingPutters;
+
+    public Drop() {
+        this(WaitStrategy.BLOCKING);
+    }
+
+    public Drop(WaitStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public WaitStrategy waitStrategy() {
+        return strategy;
+    }
+
+    public String take() throws InterruptedException {
+        return await(NO_DEADLINE);
+    }
+
+    public void put(String message) throws InterruptedException {
+        await(message, NO_DEADLINE);
+    }
+
+    /* Takes the message if there is one, without waiting. */
+    public String poll() {
+        for (;;) {
+            String message = slot.get();
+            if (message == null) {
+                return null;
+            }
+            if (slot.compareAndSet(message, null)) {
+                if (waitingPutters > 0) {
+                    signal(notFull);
+                }
+                return message;
+            }
+        }
+    }
+
+    /* Leaves the message if the drop is empty, without waiting. */
+    public boolean offer(String message) {
+        if (message == null) {
+            throw new NullPointerException();
+        }
+        if (!slot.compareAndSet(null, message)) {
+            return false;
+        }
+        if (waitingTakers > 0) {
+            signal(notEmpty);
+        }
+        return true;
+    }
+
+    /* Waits up to the timeout for a message; returns null if none arrived. */
+    public String poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return await(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /* Waits up to the timeout for the drop to empty; returns false if it did not. */
+    public boolean offer(String message, long timeout, TimeUnit unit) throws InterruptedException {
+        return await(message, System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    private String await(long deadline) throws InterruptedException {
+        String message;
+        int idle = 0;
+        while ((message = poll()) == null) {
+            if (strategy == WaitStrategy.BLOCKING) {
+                if (!awaitSlot(notEmpty, false, deadline)) {
+                    return null;
+                }
+            } else if (!idle(idle++, deadline)) {
+                return null;
+            }
         }
-        // Toggle status.
-        empty = true;
-        // Notify producer that
-        // status has changed.
-        notifyAll();
         return message;
     }
 
-    public synchronized void put(String message) {
-        // Wait until message has
-        // been retrieved.
-        while (!empty) {
+    private boolean await(String message, long deadline) throws InterruptedException {
+        int idle = 0;
+        while (!offer(message)) {
+            if (strategy == WaitStrategy.BLOCKING) {
+                if (!awaitSlot(notFull, true, deadline)) {
+                    return false;
+                }
+            } else if (!idle(idle++, deadline)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     Parks until signalled or the deadline passes. Returns false on timeout.
+
+     The waiter count is raised before the slot is re-checked, and the other side changes
+     the slot before reading the count, so at least one of them sees the other: either we
+     see the slot we want and skip the wait, or they see us waiting and signal - which
+     they can only do once await() has released the lock.
+     */
+    private boolean awaitSlot(Condition condition, boolean wantEmpty, long deadline) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (wantEmpty) {
+                waitingPutters++;
+            } else {
+                waitingTakers++;
+            }
             try {
-                wait();
-            } catch (InterruptedException e) {}
+                if ((slot.get() == null) == wantEmpty) {
+                    return true;
+                }
+                if (deadline == NO_DEADLINE) {
+                    condition.await();
+                    return true;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                condition.awaitNanos(remaining);
+                return true;
+            } finally {
+                if (wantEmpty) {
+                    waitingPutters--;
+                } else {
+                    waitingTakers--;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void signal(Condition condition) {
+        lock.lock();
+        try {
+            condition.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /* One round of spinning for the non-blocking strategies. Returns false on timeout. */
+    private boolean idle(int idle, long deadline) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (deadline != NO_DEADLINE && deadline - System.nanoTime() <= 0) {
+            return false;
+        }
+        if (strategy == WaitStrategy.SPIN_THEN_YIELD && idle >= SPIN_TRIES) {
+            Thread.yield();
+        } else {
+            Thread.onSpinWait();
         }
-        // Toggle status.
-        empty = false;
-        // Store message.
-        this.message = message;
-        // Notify consumer that status
-        // has changed.
-        notifyAll();
+        return true;
     }
 }
@@ -0,0 +1,172 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/*
+ Runs M producers and N consumers against one shared queue and reports aggregate
+ throughput and the p50/p99 handoff latency (time from put to take).
+
+ Usage: FleetRunner [producers] [consumers] [messagesPerProducer] [virtual|platform] [array|mpmc]
+
+ Virtual threads are cheap enough to run one per producer/consumer even into the
+ thousands, which is what we want when sizing consumer fleets; the platform mode is there
+ for comparison. Virtual threads need a Java 21 runtime. The project compiles for 17, so
+ they are looked up reflectively. Without a mode argument the runner uses them when the
+ JVM has them and otherwise says so and runs platform threads; asking for virtual
+ threads on an older JVM fails with a clear message.
+
+ The default queue is ArrayBlockingQueue because a virtual thread blocked on a
+ java.util.concurrent lock unmounts from its carrier. MpmcRingBufferQueue waits by
+ spinning and parking, which is fine for a few platform threads but burns carriers when
+ there are many more threads than cores.
+ */
+public class FleetRunner {
+
+    private static final int CAPACITY = 1024;
+
+    /* A message stamped with the time it was put on the queue. */
+    private static final class Stamped {
+        static final Stamped END = new Stamped(null, 0);
+
+        final String payload;
+        final long enqueuedNanos;
+
+        Stamped(String payload, long enqueuedNanos) {
+            this.payload = payload;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    /* Latencies seen by one consumer; each consumer owns one so recording is uncontended. */
+    private static final class Samples {
+        long[] values = new long[1024];
+        int count;
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int consumers = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int perProducer = args.length > 2 ? Integer.parseInt(args[2]) : 250_000;
+        String mode = args.length > 3 ? args[3] : null;
+        String queueKind = args.length > 4 ? args[4] : "array";
+
+        if (mode == null && !hasVirtualThreads()) {
+            System.err.println("virtual threads need Java 21 or later (running "
+                    + System.getProperty("java.version") + "); using platform threads");
+            mode = "platform";
+        } else if (mode == null) {
+            mode = "virtual";
+        }
+        ThreadFactory factory = mode.equals("virtual") ? virtualThreadFactory() : Thread::new;
+        BlockingQueue<Stamped> queue = queueKind.equals("mpmc")
+                ? new MpmcRingBufferQueue<Stamped>(CAPACITY)
+                : new ArrayBlockingQueue<Stamped>(CAPACITY);
+
+        List<Samples> samples = new ArrayList<>();
+        List<Thread> producerThreads = new ArrayList<>();
+        List<Thread> consumerThreads = new ArrayList<>();
+
+        for (int c = 0; c < consumers; c++) {
+            Samples s = new Samples();
+            samples.add(s);
+            consumerThreads.add(factory.newThread(() -> consume(queue, s)));
+        }
+        for (int p = 0; p < producers; p++) {
+            producerThreads.add(factory.newThread(() -> produce(queue, perProducer)));
+        }
+
+        long start = System.nanoTime();
+        consumerThreads.forEach(Thread::start);
+        producerThreads.forEach(Thread::start);
+        for (Thread t : producerThreads) {
+            t.join();
+        }
+        // one end marker per consumer, after every real message
+        for (int c = 0; c < consumers; c++) {
+            queue.put(Stamped.END);
+        }
+        for (Thread t : consumerThreads) {
+            t.join();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long[] all = merge(samples);
+        Arrays.sort(all);
+        System.out.format("%d producers, %d consumers, %s threads, %s%n",
+                producers, consumers, mode, queue.getClass().getSimpleName());
+        System.out.format("messages:  %,d in %,d ms%n", all.length, elapsed / 1_000_000);
+        System.out.format("msgs/sec:  %,.0f%n", all.length * 1e9 / elapsed);
+        System.out.format("latency:   p50 %,d ns, p99 %,d ns, max %,d ns%n",
+                QueueBenchmark.percentile(all, 50), QueueBenchmark.percentile(all, 99),
+                all.length == 0 ? 0 : all[all.length - 1]);
+    }
+
+    static void produce(BlockingQueue<Stamped> queue, int messages) {
+        try {
+            for (int i = 0; i < messages; i++) {
+                queue.put(new Stamped("message", System.nanoTime()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static void consume(BlockingQueue<Stamped> queue, Samples samples) {
+        try {
+            for (Stamped m = queue.take(); m != Stamped.END; m = queue.take()) {
+                samples.add(System.nanoTime() - m.enqueuedNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long[] merge(List<Samples> samples) {
+        int total = 0;
+        for (Samples s : samples) {
+            total += s.count;
+        }
+        long[] all = new long[total];
+        int at = 0;
+        for (Samples s : samples) {
+            System.arraycopy(s.values, 0, all, at, s.count);
+            at += s.count;
+        }
+        return all;
+    }
+
+    static boolean hasVirtualThreads() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /* Thread.ofVirtual().factory(), looked up at runtime so the project still compiles for 17. */
+    static ThreadFactory virtualThreadFactory() {
+        try {
+            Method ofVirtual = Thread.class.getMethod("ofVirtual");
+            Object builder = ofVirtual.invoke(null);
+            Method factory = ofVirtual.getReturnType().getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("virtual threads need Java 21 or later (running "
+                    + System.getProperty("java.version") + "); use platform mode", e);
+        }
+    }
+}
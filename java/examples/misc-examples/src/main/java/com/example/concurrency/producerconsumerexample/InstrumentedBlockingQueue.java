@@ -0,0 +1,350 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.lang.management.ManagementFactory;
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/*
+ Decorator that measures what happens inside any BlockingQueue:
+
+    latency     time from put/offer to take/poll, in a LatencyHistogram
+    occupancy   messages currently queued, and the highest value seen
+    blocking    how often, and for how long, put and take had to wait
+    throughput  enqueue and dequeue counters
+
+ Any BlockingQueue<E> can be wrapped, and the result is a BlockingQueue<E> too:
+
+    BlockingQueue<String> queue = new InstrumentedBlockingQueue<>(new ArrayBlockingQueue<String>(16));
+
+ Producer and Consumer only see a BlockingQueue<String> and work unchanged. To
+ timestamp messages without changing their type, the decorator keeps its own wrapper
+ objects in the delegate while they are queued, so the delegate belongs to the
+ decorator from then on: take and put only through the decorator, and wrap FIFO queues,
+ not ones that compare their elements (PriorityBlockingQueue, DelayQueue).
+
+ Latency is measured from the start of put/offer. When a put has to wait for room, that
+ wait is part of the message's latency (it is also counted on its own as blocking), as
+ the message cannot be stamped once it is in the queue and a consumer may have it.
+
+ With sampleEvery = 1 every message is wrapped and timed. A larger value wraps roughly
+ one message in sampleEvery and passes the rest through untouched, which removes the
+ allocation and the two nanoTime calls from most handoffs. Occupancy high-water marks
+ are updated at the sampled puts only.
+
+ Blocking time is only measured when the non-blocking attempt fails, so the fast path
+ costs a failed-or-successful offer/poll plus a couple of counter increments.
+ */
+public class InstrumentedBlockingQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    /* Wrapper carrying the enqueue time of a sampled message. */
+    private static final class Stamped {
+        final Object value;
+        final long enqueuedNanos;
+
+        Stamped(Object value, long enqueuedNanos) {
+            this.value = value;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final BlockingQueue<Object> delegate;
+    private final int sampleEvery;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dequeued = new LongAdder();
+    private final AtomicLong maxOccupancy = new AtomicLong();
+    private final LongAdder putBlockedCount = new LongAdder();
+    private final LongAdder putBlockedNanos = new LongAdder();
+    private final LongAdder takeBlockedCount = new LongAdder();
+    private final LongAdder takeBlockedNanos = new LongAdder();
+    private final long createdNanos = System.nanoTime();
+
+    public InstrumentedBlockingQueue(BlockingQueue<E> delegate) {
+        this(delegate, 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    public InstrumentedBlockingQueue(BlockingQueue<E> delegate, int sampleEvery) {
+        if (sampleEvery < 1) {
+            throw new IllegalArgumentException("sampleEvery must be positive: " + sampleEvery);
+        }
+        // holds Stamped wrappers as well as E; nothing outside this class sees them
+        this.delegate = (BlockingQueue<Object>) (BlockingQueue<?>) delegate;
+        this.sampleEvery = sampleEvery;
+    }
+
+    /* Registers the metrics with the platform MBean server and returns the name used. */
+    public ObjectName register(String name) throws JMException {
+        ObjectName objectName = new ObjectName("com.example.concurrency:type=InstrumentedQueue,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), objectName);
+        return objectName;
+    }
+
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    // ---- enqueue side ----
+
+    @Override
+    public boolean offer(E e) {
+        Object w = wrap(e);
+        if (!delegate.offer(w)) {
+            return false;
+        }
+        enqueued(w);
+        return true;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        Object w = wrap(e);
+        if (!delegate.offer(w)) {
+            long start = System.nanoTime();
+            delegate.put(w);
+            putBlocked(start);
+        }
+        enqueued(w);
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        Object w = wrap(e);
+        if (!delegate.offer(w)) {
+            long start = System.nanoTime();
+            boolean added = delegate.offer(w, timeout, unit);
+            putBlocked(start);
+            if (!added) {
+                return false;
+            }
+        }
+        enqueued(w);
+        return true;
+    }
+
+    // ---- dequeue side ----
+
+    @Override
+    public E poll() {
+        Object o = delegate.poll();
+        return o == null ? null : dequeued(o);
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        Object o = delegate.poll();
+        if (o == null) {
+            long start = System.nanoTime();
+            o = delegate.take();
+            takeBlocked(start);
+        }
+        return dequeued(o);
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        Object o = delegate.poll();
+        if (o == null) {
+            long start = System.nanoTime();
+            o = delegate.poll(timeout, unit);
+            takeBlocked(start);
+            if (o == null) {
+                return null;
+            }
+        }
+        return dequeued(o);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        List<Object> drained = new ArrayList<>();
+        int n = delegate.drainTo(drained, maxElements);
+        for (Object o : drained) {
+            c.add(dequeued(o));
+        }
+        return n;
+    }
+
+    // ---- inspection ----
+
+    @Override
+    public E peek() {
+        return unwrap(delegate.peek());
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return delegate.remainingCapacity();
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        final Iterator<Object> it = delegate.iterator();
+        return new Iterator<E>() {
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            public E next() {
+                return unwrap(it.next());
+            }
+
+            public void remove() {
+                it.remove();
+                dequeued.increment();
+            }
+        };
+    }
+
+    // ---- bookkeeping ----
+
+    private Object wrap(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        if (sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0) {
+            return new Stamped(e, System.nanoTime());
+        }
+        return e;
+    }
+
+    @SuppressWarnings("unchecked")
+    private E unwrap(Object o) {
+        return (E) (o instanceof Stamped ? ((Stamped) o).value : o);
+    }
+
+    private void enqueued(Object w) {
+        enqueued.increment();
+        if (w instanceof Stamped) {
+            long occupancy = occupancy();
+            long m = maxOccupancy.get();
+            while (occupancy > m && !maxOccupancy.compareAndSet(m, occupancy)) {
+                m = maxOccupancy.get();
+            }
+        }
+    }
+
+    private E dequeued(Object o) {
+        dequeued.increment();
+        if (o instanceof Stamped) {
+            latency.record(System.nanoTime() - ((Stamped) o).enqueuedNanos);
+        }
+        return unwrap(o);
+    }
+
+    private void putBlocked(long start) {
+        putBlockedCount.increment();
+        putBlockedNanos.add(System.nanoTime() - start);
+    }
+
+    private void takeBlocked(long start) {
+        takeBlockedCount.increment();
+        takeBlockedNanos.add(System.nanoTime() - start);
+    }
+
+    private long occupancy() {
+        return Math.max(0, enqueued.sum() - dequeued.sum());
+    }
+
+    private double perSecond(long count) {
+        double seconds = (System.nanoTime() - createdNanos) / 1e9;
+        return seconds <= 0 ? 0 : count / seconds;
+    }
+
+    private class Metrics implements QueueMetricsMXBean {
+        public long getEnqueued() {
+            return enqueued.sum();
+        }
+
+        public long getDequeued() {
+            return dequeued.sum();
+        }
+
+        public double getEnqueuedPerSecond() {
+            return perSecond(enqueued.sum());
+        }
+
+        public double getDequeuedPerSecond() {
+            return perSecond(dequeued.sum());
+        }
+
+        public long getOccupancy() {
+            return occupancy();
+        }
+
+        public long getMaxOccupancy() {
+            return maxOccupancy.get();
+        }
+
+        public long getPutBlockedCount() {
+            return putBlockedCount.sum();
+        }
+
+        public long getPutBlockedNanos() {
+            return putBlockedNanos.sum();
+        }
+
+        public long getTakeBlockedCount() {
+            return takeBlockedCount.sum();
+        }
+
+        public long getTakeBlockedNanos() {
+            return takeBlockedNanos.sum();
+        }
+
+        public long getLatencyCount() {
+            return latency.count();
+        }
+
+        public double getLatencyMeanNanos() {
+            return latency.mean();
+        }
+
+        public long getLatencyP50Nanos() {
+            return latency.percentile(50);
+        }
+
+        public long getLatencyP99Nanos() {
+            return latency.percentile(99);
+        }
+
+        public long getLatencyP999Nanos() {
+            return latency.percentile(99.9);
+        }
+
+        public long getLatencyMaxNanos() {
+            return latency.max();
+        }
+
+        public void resetLatency() {
+            latency.reset();
+        }
+    }
+}
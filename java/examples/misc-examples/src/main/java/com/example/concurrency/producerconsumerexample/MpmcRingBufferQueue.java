@@ -0,0 +1,103 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ Multi-producer multi-consumer ring buffer (Dmitry Vyukov's bounded MPMC queue).
+
+ Every slot carries its own sequence number, which tells a thread whether the slot is
+ ready for it:
+    sequence == pos      slot is free for the producer claiming pos
+    sequence == pos + 1  slot holds the element for the consumer claiming pos
+ Producers and consumers claim a position by CAS on their shared counter, then fill or
+ empty the slot and publish the slot's next sequence. A slow thread only delays the one
+ slot it claimed; it never blocks the others from claiming the following slots.
+ */
+public class MpmcRingBufferQueue<E> extends RingBufferQueue<E> {
+
+    private final AtomicLongArray sequences;
+    private final PaddedAtomicLong enqueuePos = new PaddedAtomicLong(0);
+    private final PaddedAtomicLong dequeuePos = new PaddedAtomicLong(0);
+
+    public MpmcRingBufferQueue(int capacity) {
+        super(capacity);
+        sequences = new AtomicLongArray(this.capacity);
+        for (int i = 0; i < this.capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    protected long producerIndex() {
+        return enqueuePos.get();
+    }
+
+    @Override
+    protected long consumerIndex() {
+        return dequeuePos.get();
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        long pos = enqueuePos.get();
+        for (;;) {
+            int i = index(pos);
+            long diff = sequences.get(i) - pos;
+            if (diff == 0) {
+                if (enqueuePos.compareAndSet(pos, pos + 1)) {
+                    buffer.lazySet(i, e);
+                    sequences.lazySet(i, pos + 1);
+                    return true;
+                }
+                pos = enqueuePos.get();
+            } else if (diff < 0) {
+                // the slot still holds an element from the previous lap: full
+                return false;
+            } else {
+                // another producer got here first
+                pos = enqueuePos.get();
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        long pos = dequeuePos.get();
+        for (;;) {
+            int i = index(pos);
+            long diff = sequences.get(i) - (pos + 1);
+            if (diff == 0) {
+                if (dequeuePos.compareAndSet(pos, pos + 1)) {
+                    E e = buffer.get(i);
+                    buffer.lazySet(i, null);
+                    sequences.lazySet(i, pos + capacity);
+                    return e;
+                }
+                pos = dequeuePos.get();
+            } else if (diff < 0) {
+                // the producer for this slot has not published yet: empty
+                return null;
+            } else {
+                pos = dequeuePos.get();
+            }
+        }
+    }
+
+    @Override
+    public E peek() {
+        for (;;) {
+            long pos = dequeuePos.get();
+            int i = index(pos);
+            long diff = sequences.get(i) - (pos + 1);
+            if (diff < 0) {
+                return null;
+            }
+            E e = buffer.get(i);
+            // only trust the element if no consumer claimed the slot while we read it
+            if (diff == 0 && e != null && dequeuePos.get() == pos) {
+                return e;
+            }
+        }
+    }
+}
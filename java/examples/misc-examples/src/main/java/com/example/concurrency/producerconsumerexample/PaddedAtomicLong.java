@@ -0,0 +1,24 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ An AtomicLong padded out to a full cache line.
+
+ The producer and consumer sequences of a ring buffer are written by different threads
+ on every message. If both counters sit on the same 64 byte cache line every write by
+ one side invalidates the line in the other core's cache ("false sharing"), which costs
+ more than the handoff itself. Subclass fields are laid out after the superclass value,
+ so the seven longs below push the next object off the line.
+ */
+class PaddedAtomicLong extends AtomicLong {
+
+    private static final long serialVersionUID = 1L;
+
+    @SuppressWarnings("unused")
+    private long p1, p2, p3, p4, p5, p6, p7;
+
+    PaddedAtomicLong(long initialValue) {
+        super(initialValue);
+    }
+}
@@ -43,14 +43,48 @@ package com.example.concurrency.producerconsumerexample;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
 
+/*
+ The queue can be chosen with the first argument: sync (default), array, spsc or mpmc.
+ Producer and Consumer only see a BlockingQueue, so they work unchanged with any of them.
+
+ "batch" runs BatchProducer/BatchConsumer instead, which move whole batches of messages
+ per handoff: ProducerConsumerExample batch [batchSize] [lingerMillis] [batchesPerWakeup]
+ */
 public class ProducerConsumerExample {
     public static void main(String[] args) {
 
-        BlockingQueue<String> queue = new SynchronousQueue<String>();
+        if (args.length > 0 && args[0].equals("batch")) {
+            int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+            long lingerMillis = args.length > 2 ? Long.parseLong(args[2]) : 10;
+            int batchesPerWakeup = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+
+            BlockingQueue<Batch> batches = new ArrayBlockingQueue<Batch>(16);
+            (new Thread(new BatchProducer(batches, batchSize, lingerMillis, TimeUnit.MILLISECONDS))).start();
+            (new Thread(new BatchConsumer(batches, batchesPerWakeup))).start();
+            return;
+        }
+
+        BlockingQueue<String> queue = createQueue(args.length > 0 ? args[0] : "sync");
 
         (new Thread(new Producer(queue))).start();
         (new Thread(new Consumer(queue))).start();
 
     }
+
+    static BlockingQueue<String> createQueue(String kind) {
+        switch (kind) {
+            case "sync":
+                return new SynchronousQueue<String>();
+            case "array":
+                return new ArrayBlockingQueue<String>(16);
+            case "spsc":
+                return new SpscRingBufferQueue<String>(16);
+            case "mpmc":
+                return new MpmcRingBufferQueue<String>(16);
+            default:
+                throw new IllegalArgumentException("unknown queue: " + kind);
+        }
+    }
 }
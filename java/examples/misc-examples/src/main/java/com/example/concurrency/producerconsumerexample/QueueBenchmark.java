@@ -0,0 +1,173 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.function.Supplier;
+
+/*
+ Compares the handoff cost of Drop (with each of its wait strategies), SynchronousQueue,
+ ArrayBlockingQueue and the two ring buffers with one producer and one consumer thread.
+ The "+metrics" rows wrap a queue in InstrumentedBlockingQueue (timing every message, or
+ one in 64) to show the overhead of instrumenting it.
+
+    throughput - the producer pushes the messages as fast as it can, the consumer
+                 takes them; reports messages per second.
+    latency    - ping-pong between two queues of the same kind; the round trip is
+                 halved to get a one-way handoff latency, reported as p50/p99/max.
+
+ Usage: QueueBenchmark [--busy-spin] [messages] [round trips] [name filter]
+
+ The optional filter runs only the queues whose name contains it, e.g. "metrics".
+
+ Drop BUSY_SPIN needs a free core for each side; with fewer cores than threads each
+ handoff waits for a scheduler preemption and the run takes minutes. So it is skipped
+ on machines with fewer than two cores unless --busy-spin asks for it anyway.
+
+ This is a plain main() rather than JMH, so run it a few times and ignore the first
+ results while the JIT warms up.
+ */
+public class QueueBenchmark {
+
+    private static final int CAPACITY = 1024;
+    private static final int THREADS = 2;
+    private static final String[] PAYLOAD = {
+            "Mares eat oats",
+            "Does eat oats",
+            "Little lambs eat ivy",
+            "A kid will eat ivy too"
+    };
+
+    /* The smallest common interface of Drop and BlockingQueue. */
+    interface Handoff {
+        void put(String message) throws InterruptedException;
+
+        String take() throws InterruptedException;
+
+        static Handoff of(BlockingQueue<String> queue) {
+            return new Handoff() {
+                public void put(String message) throws InterruptedException {
+                    queue.put(message);
+                }
+
+                public String take() throws InterruptedException {
+                    return queue.take();
+                }
+            };
+        }
+
+        static Handoff of(Drop drop) {
+            return new Handoff() {
+                public void put(String message) throws InterruptedException {
+                    drop.put(message);
+                }
+
+                public String take() throws InterruptedException {
+                    return drop.take();
+                }
+            };
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        boolean busySpin = args.length > 0 && args[0].equals("--busy-spin");
+        if (busySpin) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int roundTrips = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        String filter = args.length > 2 ? args[2] : "";
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        if (!busySpin && cores < THREADS) {
+            System.err.println("skipping Drop BUSY_SPIN: " + cores + " core(s) for " + THREADS
+                    + " threads (--busy-spin runs it anyway)");
+        }
+
+        Map<String, Supplier<Handoff>> queues = new LinkedHashMap<>();
+        for (Drop.WaitStrategy strategy : Drop.WaitStrategy.values()) {
+            if (strategy == Drop.WaitStrategy.BUSY_SPIN && !busySpin && cores < THREADS) {
+                continue;
+            }
+            queues.put("Drop " + strategy, () -> Handoff.of(new Drop(strategy)));
+        }
+        queues.put("SynchronousQueue", () -> Handoff.of(new SynchronousQueue<String>()));
+        queues.put("ArrayBlockingQueue", () -> Handoff.of(new ArrayBlockingQueue<String>(CAPACITY)));
+        queues.put("SpscRingBufferQueue", () -> Handoff.of(new SpscRingBufferQueue<String>(CAPACITY)));
+        queues.put("MpmcRingBufferQueue", () -> Handoff.of(new MpmcRingBufferQueue<String>(CAPACITY)));
+        // the same queues behind the metrics decorator, to show what instrumenting costs
+        queues.put("ArrayBlockingQueue+metrics", () -> Handoff.of(
+                new InstrumentedBlockingQueue<String>(new ArrayBlockingQueue<>(CAPACITY))));
+        queues.put("SpscRingBuffer+metrics", () -> Handoff.of(
+                new InstrumentedBlockingQueue<String>(new SpscRingBufferQueue<>(CAPACITY))));
+        queues.put("SpscRingBuffer+metrics/64", () -> Handoff.of(
+                new InstrumentedBlockingQueue<String>(new SpscRingBufferQueue<>(CAPACITY), 64)));
+
+        System.out.format("%-26s %14s %10s %10s %10s%n", "queue", "msgs/sec", "p50 ns", "p99 ns", "max ns");
+        for (Map.Entry<String, Supplier<Handoff>> entry : queues.entrySet()) {
+            if (!entry.getKey().contains(filter)) {
+                continue;
+            }
+            // warm up, then measure
+            throughput(entry.getValue().get(), messages / 10);
+            latency(entry.getValue().get(), entry.getValue().get(), roundTrips / 10);
+
+            double rate = throughput(entry.getValue().get(), messages);
+            long[] oneWay = latency(entry.getValue().get(), entry.getValue().get(), roundTrips);
+            System.out.format("%-26s %,14.0f %,10d %,10d %,10d%n", entry.getKey(), rate,
+                    percentile(oneWay, 50), percentile(oneWay, 99), oneWay[oneWay.length - 1]);
+        }
+    }
+
+    static double throughput(Handoff handoff, int messages) throws InterruptedException {
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < messages; i++) {
+                    handoff.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        long start = System.nanoTime();
+        consumer.start();
+        for (int i = 0; i < messages; i++) {
+            handoff.put(PAYLOAD[i & 3]);
+        }
+        consumer.join();
+        long elapsed = System.nanoTime() - start;
+        return messages * 1e9 / elapsed;
+    }
+
+    /* Returns the sorted one-way latencies in nanoseconds. */
+    static long[] latency(Handoff ping, Handoff pong, int roundTrips) throws InterruptedException {
+        Thread echo = new Thread(() -> {
+            try {
+                for (int i = 0; i < roundTrips; i++) {
+                    pong.put(ping.take());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        echo.start();
+        long[] samples = new long[roundTrips];
+        for (int i = 0; i < roundTrips; i++) {
+            long start = System.nanoTime();
+            ping.put(PAYLOAD[i & 3]);
+            pong.take();
+            samples[i] = (System.nanoTime() - start) / 2;
+        }
+        echo.join();
+        Arrays.sort(samples);
+        return samples;
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        int i = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.concurrency.producerconsumerexample;
+
+/*
+ JMX view of an InstrumentedBlockingQueue. Times are in nanoseconds.
+
+ Registered under com.example.concurrency:type=InstrumentedQueue,name=<name>, so it can be
+ watched live from JConsole or VisualVM.
+ */
+public interface QueueMetricsMXBean {
+
+    long getEnqueued();
+
+    long getDequeued();
+
+    double getEnqueuedPerSecond();
+
+    double getDequeuedPerSecond();
+
+    long getOccupancy();
+
+    long getMaxOccupancy();
+
+    long getPutBlockedCount();
+
+    long getPutBlockedNanos();
+
+    long getTakeBlockedCount();
+
+    long getTakeBlockedNanos();
+
+    long getLatencyCount();
+
+    double getLatencyMeanNanos();
+
+    long getLatencyP50Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyP999Nanos();
+
+    long getLatencyMaxNanos();
+
+    void resetLatency();
+}
@@ -0,0 +1,237 @@
+package com.example.concurrency.producerconsumerexample;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+ Bounded, lock-free ring buffer that can be handed to Producer and Consumer in place of
+ a SynchronousQueue or ArrayBlockingQueue.
+
+ The capacity is rounded up to a power of two so that a sequence number maps to a slot
+ with a mask instead of a modulo. Sequences are never reset; they simply keep counting
+ and wrap around the array.
+
+ There is no lock, so there is nothing to wait on: the blocking put/take methods retry
+ the non-blocking offer/poll and back off progressively (spin, then yield, then a short
+ park). This trades a little CPU on an idle queue for never paying a monitor handoff or
+ an unpark on a busy one.
+
+ Subclasses decide how producers and consumers claim slots:
+    SpscRingBufferQueue - exactly one producer thread and one consumer thread
+    MpmcRingBufferQueue - any number of both
+
+ Elements only leave at the head: remove(Object), removeAll, retainAll and removeIf
+ throw UnsupportedOperationException, since taking an element out of the middle would
+ leave a hole that producers and consumers both step over without a lock. So these
+ queues do not suit callers that cancel queued work that way, such as a
+ ThreadPoolExecutor whose remove(Runnable) or purge() is used.
+ */
+public abstract class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = 1000;
+
+    protected final int capacity;
+    protected final int mask;
+    protected final AtomicReferenceArray<E> buffer;
+
+    protected RingBufferQueue(int requestedCapacity) {
+        if (requestedCapacity < 1 || requestedCapacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity out of range: " + requestedCapacity);
+        }
+        this.capacity = roundUpToPowerOfTwo(requestedCapacity);
+        this.mask = capacity - 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+    }
+
+    static int roundUpToPowerOfTwo(int value) {
+        return value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    protected final int index(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    /* Sequence of the next slot a producer will write. */
+    protected abstract long producerIndex();
+
+    /* Sequence of the next slot a consumer will read. */
+    protected abstract long consumerIndex();
+
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int size() {
+        // Re-read the consumer index so the two reads are from a consistent moment.
+        for (;;) {
+            long before = consumerIndex();
+            long producer = producerIndex();
+            long after = consumerIndex();
+            if (before == after) {
+                return (int) Math.max(0, Math.min(capacity, producer - after));
+            }
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return producerIndex() == consumerIndex();
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        checkNotNull(e);
+        int idle = 0;
+        while (!offer(e)) {
+            idle = backOff(idle);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        checkNotNull(e);
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int idle = 0;
+        while (!offer(e)) {
+            if (deadline - System.nanoTime() <= 0) {
+                return false;
+            }
+            idle = backOff(idle);
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        int idle = 0;
+        while ((e = poll()) == null) {
+            idle = backOff(idle);
+        }
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        E e;
+        int idle = 0;
+        while ((e = poll()) == null) {
+            if (deadline - System.nanoTime() <= 0) {
+                return null;
+            }
+            idle = backOff(idle);
+        }
+        return e;
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        if (c == null) {
+            throw new NullPointerException();
+        }
+        if (c == this) {
+            throw new IllegalArgumentException();
+        }
+        int n = 0;
+        E e;
+        while (n < maxElements && (e = poll()) != null) {
+            c.add(e);
+            n++;
+        }
+        return n;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw removeUnsupported();
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        throw removeUnsupported();
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        throw removeUnsupported();
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        throw removeUnsupported();
+    }
+
+    private static UnsupportedOperationException removeUnsupported() {
+        return new UnsupportedOperationException("a ring buffer queue only removes elements at its head");
+    }
+
+    /*
+     Weakly consistent: returns the elements that were visible when the iterator was
+     created, and does not support remove. Only useful for debugging and toString().
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long consumer = consumerIndex();
+        long producer = producerIndex();
+        for (long seq = consumer; seq < producer && seq - consumer < capacity; seq++) {
+            E e = buffer.get(index(seq));
+            if (e != null) {
+                snapshot.add(e);
+            }
+        }
+        final Iterator<E> it = snapshot.iterator();
+        return new Iterator<E>() {
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            public E next() {
+                return it.next();
+            }
+        };
+    }
+
+    protected static void checkNotNull(Object e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+    }
+
+    /* Spin for a while, then yield, then park for a microsecond at a time. */
+    static int backOff(int idle) throws InterruptedException {
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        if (idle < SPIN_TRIES) {
+            // busy spin
+        } else if (idle < YIELD_TRIES) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.concurrency.producerconsumerexample;
+
+/*
+ Single-producer single-consumer ring buffer.
+
+ With only one writer per counter no CAS is needed: the producer owns tail, the consumer
+ owns head, and each publishes its progress with lazySet (a release store, much cheaper
+ than a volatile write). Each side also caches the last value it read of the other
+ side's counter and only re-reads it when the cache says the queue is full/empty, so in
+ steady state neither thread touches the other's cache line.
+
+ Using this from more than one producer or more than one consumer thread corrupts the
+ queue. Use MpmcRingBufferQueue for that.
+ */
+public class SpscRingBufferQueue<E> extends RingBufferQueue<E> {
+
+    // next sequence to read, written only by the consumer
+    private final PaddedAtomicLong head = new PaddedAtomicLong(0);
+    // next sequence to write, written only by the producer
+    private final PaddedAtomicLong tail = new PaddedAtomicLong(0);
+
+    // producer's view of head
+    private long headCache;
+    // consumer's view of tail
+    private long tailCache;
+
+    public SpscRingBufferQueue(int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    protected long producerIndex() {
+        return tail.get();
+    }
+
+    @Override
+    protected long consumerIndex() {
+        return head.get();
+    }
+
+    @Override
+    public boolean offer(E e) {
+        checkNotNull(e);
+        long t = tail.get();
+        if (t - headCache >= capacity) {
+            headCache = head.get();
+            if (t - headCache >= capacity) {
+                return false;
+            }
+        }
+        buffer.lazySet(index(t), e);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    @Override
+    public E poll() {
+        long h = head.get();
+        if (h >= tailCache) {
+            tailCache = tail.get();
+            if (h >= tailCache) {
+                return null;
+            }
+        }
+        int i = index(h);
+        E e = buffer.get(i);
+        buffer.lazySet(i, null);
+        head.lazySet(h + 1);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long h = head.get();
+        if (h >= tail.get()) {
+            return null;
+        }
+        return buffer.get(index(h));
+    }
+}
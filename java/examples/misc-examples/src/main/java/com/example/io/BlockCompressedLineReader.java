@@ -0,0 +1,202 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/*
+ Random access reader for files written by BlockCompressedLineWriter.
+
+ Opening reads only the trailer and the block index (16 bytes per block). line(n) finds
+ the block holding line n by binary search on the first line numbers, inflates just that
+ block and picks the line out of it. The most recently inflated block is kept, so reading
+ nearby lines in order costs one inflate per block.
+
+ sample(k) picks k distinct line numbers, sorts them and reads them block by block, so
+ a sample touches at most k blocks however large the file is.
+
+ Not thread safe.
+ */
+public class BlockCompressedLineReader implements Closeable {
+
+    private final FileChannel channel;
+    private final long[] firstLines;
+    private final long[] offsets;
+    private final long lineCount;
+    private final Inflater inflater = new Inflater(true);
+
+    // the block currently inflated, and where each of its lines starts
+    private int cachedBlock = -1;
+    private byte[] data = new byte[0];
+    private int dataLength;
+    private int[] lineStarts = new int[0];
+    private int cachedLines;
+    private byte[] compressed = new byte[0];
+
+    public BlockCompressedLineReader(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer head = read(0, 8);
+            if (size < 8 + BlockCompressedLineWriter.TRAILER || head.getInt() != BlockCompressedLineWriter.MAGIC) {
+                throw new IOException(path + " is not a block-compressed line file");
+            }
+            if (head.getInt() != BlockCompressedLineWriter.VERSION) {
+                throw new IOException(path + " has an unsupported version");
+            }
+            ByteBuffer trailer = read(size - BlockCompressedLineWriter.TRAILER, BlockCompressedLineWriter.TRAILER);
+            long indexOffset = trailer.getLong();
+            int blocks = trailer.getInt();
+            lineCount = trailer.getLong();
+            if (trailer.getInt() != BlockCompressedLineWriter.MAGIC) {
+                throw new IOException(path + " is truncated");
+            }
+            ByteBuffer index = read(indexOffset, blocks * 16);
+            firstLines = new long[blocks];
+            offsets = new long[blocks];
+            for (int i = 0; i < blocks; i++) {
+                firstLines[i] = index.getLong();
+                offsets[i] = index.getLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long lineCount() {
+        return lineCount;
+    }
+
+    public int blockCount() {
+        return offsets.length;
+    }
+
+    public String line(long n) throws IOException {
+        if (n < 0 || n >= lineCount) {
+            throw new IndexOutOfBoundsException("line " + n + ", lines " + lineCount);
+        }
+        int b = Arrays.binarySearch(firstLines, n);
+        if (b < 0) {
+            b = -b - 2;
+        }
+        load(b);
+        int i = (int) (n - firstLines[b]);
+        int start = lineStarts[i];
+        int end = (i + 1 < cachedLines ? lineStarts[i + 1] : dataLength) - 1;
+        return new String(data, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /* k distinct lines chosen uniformly at random, in file order. */
+    public List<String> sample(int k, Random random) throws IOException {
+        int n = (int) Math.min(k, lineCount);
+        // Floyd's algorithm: n distinct numbers from [0, lineCount) in O(n) memory
+        Set<Long> chosen = new HashSet<>();
+        for (long j = lineCount - n; j < lineCount; j++) {
+            long t = (long) (random.nextDouble() * (j + 1));
+            if (!chosen.add(t)) {
+                chosen.add(j);
+            }
+        }
+        long[] picks = new long[n];
+        int at = 0;
+        for (long p : chosen) {
+            picks[at++] = p;
+        }
+        Arrays.sort(picks);
+        List<String> result = new ArrayList<>(n);
+        for (long p : picks) {
+            result.add(line(p));
+        }
+        return result;
+    }
+
+    /* Streams every line in order, inflating each block once. */
+    public void forEachLine(Consumer<String> action) throws IOException {
+        for (long n = 0; n < lineCount; n++) {
+            action.accept(line(n));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    private void load(int block) throws IOException {
+        if (block == cachedBlock) {
+            return;
+        }
+        ByteBuffer header = read(offsets[block], BlockCompressedLineWriter.BLOCK_HEADER);
+        int compressedLength = header.getInt();
+        int length = header.getInt();
+        int lines = header.getInt();
+
+        if (compressed.length < compressedLength) {
+            compressed = new byte[compressedLength];
+        }
+        ByteBuffer in = ByteBuffer.wrap(compressed, 0, compressedLength);
+        long pos = offsets[block] + BlockCompressedLineWriter.BLOCK_HEADER;
+        while (in.hasRemaining()) {
+            if (channel.read(in, pos + in.position()) < 0) {
+                throw new IOException("block " + block + " is truncated");
+            }
+        }
+        if (data.length < length) {
+            data = new byte[length];
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int n = 0;
+            while (n < length) {
+                int got = inflater.inflate(data, n, length - n);
+                if (got == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("block " + block + " is corrupt");
+                }
+                n += got;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("block " + block + " is corrupt", e);
+        }
+
+        if (lineStarts.length < lines) {
+            lineStarts = new int[lines];
+        }
+        int line = 0;
+        lineStarts[line++] = 0;
+        for (int i = 0; i < length - 1 && line < lines; i++) {
+            if (data[i] == '\n') {
+                lineStarts[line++] = i + 1;
+            }
+        }
+        dataLength = length;
+        cachedLines = lines;
+        cachedBlock = block;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(length);
+        while (b.hasRemaining()) {
+            if (channel.read(b, position + b.position()) < 0) {
+                throw new IOException("unexpected end of file");
+            }
+        }
+        b.flip();
+        return b;
+    }
+}
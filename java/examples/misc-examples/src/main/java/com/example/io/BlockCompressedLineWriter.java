@@ -0,0 +1,180 @@
+package com.example.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/*
+ Writes text lines in a block-compressed format that can be read at random without
+ decompressing the whole file (see BlockCompressedLineReader).
+
+ Lines are collected, '\n' terminated, into blocks of about blockSize uncompressed bytes,
+ and each block is deflated on its own - so any block can be inflated without the ones
+ before it. The cost is a slightly worse ratio than one continuous stream, because the
+ compressor starts each block with an empty dictionary; 64 KB blocks lose only a few
+ percent.
+
+ Layout (all numbers big-endian):
+
+    int   MAGIC
+    int   VERSION
+    block*:
+        int   compressed length
+        int   uncompressed length
+        int   lines in the block
+        byte  raw deflate data
+    index: per block
+        long  number of the block's first line
+        long  file offset of the block
+    trailer:
+        long  file offset of the index
+        int   number of blocks
+        long  total lines
+        int   MAGIC
+ */
+public class BlockCompressedLineWriter implements Closeable {
+
+    public static final String SUFFIX = ".blkz";
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    static final int MAGIC = 0x424C4B5A;
+    static final int VERSION = 1;
+    static final int BLOCK_HEADER = 12;
+    static final int TRAILER = 24;
+
+    private final DataOutputStream out;
+    private final int blockSize;
+    private final Deflater deflater;
+
+    private byte[] block;
+    private int blockLength;
+    private int blockLines;
+    private byte[] compressed = new byte[0];
+
+    private long position;
+    private long lines;
+    private long[] firstLines = new long[64];
+    private long[] offsets = new long[64];
+    private int blocks;
+
+    public BlockCompressedLineWriter(Path path) throws IOException {
+        this(path, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public BlockCompressedLineWriter(Path path, int blockSize, int level) throws IOException {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("blockSize must be positive: " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.block = new byte[blockSize];
+        this.deflater = new Deflater(level, true);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 64 * 1024));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        position = 8;
+    }
+
+    public void writeLine(CharSequence line) throws IOException {
+        writeLine(line.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /* Writes one line; a line containing '\n' is rejected with IllegalArgumentException. */
+    public void writeLine(byte[] line) throws IOException {
+        writeLine(line, 0, line.length);
+    }
+
+    public void writeLine(byte[] line, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            if (line[i] == '\n') {
+                // it would split into two lines and shift every line number after it
+                throw new IllegalArgumentException("line " + lines + " contains a newline at byte " + (i - offset));
+            }
+        }
+        int needed = blockLength + length + 1;
+        if (needed > block.length) {
+            if (blockLength > 0) {
+                flushBlock();
+            }
+            // a single line longer than the block size gets a block of its own
+            if (length + 1 > block.length) {
+                block = new byte[length + 1];
+            }
+        }
+        System.arraycopy(line, offset, block, blockLength, length);
+        blockLength += length;
+        block[blockLength++] = '\n';
+        blockLines++;
+        lines++;
+        if (blockLength >= blockSize) {
+            flushBlock();
+        }
+    }
+
+    public long lineCount() {
+        return lines;
+    }
+
+    private void flushBlock() throws IOException {
+        if (blocks == offsets.length) {
+            offsets = Arrays.copyOf(offsets, blocks * 2);
+            firstLines = Arrays.copyOf(firstLines, blocks * 2);
+        }
+        offsets[blocks] = position;
+        firstLines[blocks] = lines - blockLines;
+        blocks++;
+
+        deflater.reset();
+        deflater.setInput(block, 0, blockLength);
+        deflater.finish();
+        int bound = blockLength + blockLength / 1000 + 64;
+        if (compressed.length < bound) {
+            compressed = new byte[bound];
+        }
+        int n = 0;
+        while (!deflater.finished()) {
+            if (n == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            n += deflater.deflate(compressed, n, compressed.length - n);
+        }
+
+        out.writeInt(n);
+        out.writeInt(blockLength);
+        out.writeInt(blockLines);
+        out.write(compressed, 0, n);
+        position += BLOCK_HEADER + n;
+
+        if (block.length > blockSize) {
+            block = new byte[blockSize];
+        }
+        blockLength = 0;
+        blockLines = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (blockLength > 0) {
+                flushBlock();
+            }
+            long indexOffset = position;
+            for (int i = 0; i < blocks; i++) {
+                out.writeLong(firstLines[i]);
+                out.writeLong(offsets[i]);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(blocks);
+            out.writeLong(lines);
+            out.writeInt(MAGIC);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
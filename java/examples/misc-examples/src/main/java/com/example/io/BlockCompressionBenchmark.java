@@ -0,0 +1,105 @@
+package com.example.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ Compresses a text file both as one gzip stream and in the block-compressed line format,
+ then compares:
+
+    size       compressed size and ratio
+    write      lines per second compressing
+    scan       lines per second reading every line back
+    sample     time to fetch `samples` random lines - gzip has to inflate everything up
+               to the last line it needs, the block format only the blocks it touches
+
+ Usage: BlockCompressionBenchmark file [samples]
+ */
+public class BlockCompressionBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        Path input = Paths.get(args[0]);
+        int samples = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        Path gz = Paths.get(args[0] + ".gz");
+        Path blk = Paths.get(args[0] + BlockCompressedLineWriter.SUFFIX);
+        long originalSize = Files.size(input);
+
+        long t0 = System.nanoTime();
+        long lines = 0;
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                     new GZIPOutputStream(Files.newOutputStream(gz), 64 * 1024), StandardCharsets.UTF_8))) {
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                out.write(line);
+                out.write('\n');
+                lines++;
+            }
+        }
+        long t1 = System.nanoTime();
+        try (MappedLineReader in = new MappedLineReader(input);
+             BlockCompressedLineWriter out = new BlockCompressedLineWriter(blk)) {
+            for (LineView line = in.next(); line != null; line = in.next()) {
+                out.writeLine(line.toBytes());
+            }
+        }
+        long t2 = System.nanoTime();
+
+        long gzScanned = 0;
+        try (BufferedReader in = gzipReader(gz)) {
+            while (in.readLine() != null) {
+                gzScanned++;
+            }
+        }
+        long t3 = System.nanoTime();
+        long[] blkScanned = new long[1];
+        try (BlockCompressedLineReader in = new BlockCompressedLineReader(blk)) {
+            in.forEachLine(l -> blkScanned[0]++);
+        }
+        long t4 = System.nanoTime();
+
+        // gzip: sample the same number of lines, reading up to the furthest one
+        Random random = new Random(42);
+        long furthest = 0;
+        for (int i = 0; i < samples; i++) {
+            furthest = Math.max(furthest, (long) (random.nextDouble() * lines));
+        }
+        try (BufferedReader in = gzipReader(gz)) {
+            for (long n = 0; n <= furthest && in.readLine() != null; n++) {
+                // skip to the line
+            }
+        }
+        long t5 = System.nanoTime();
+        int blocks;
+        try (BlockCompressedLineReader in = new BlockCompressedLineReader(blk)) {
+            in.sample(samples, new Random(42));
+            blocks = in.blockCount();
+        }
+        long t6 = System.nanoTime();
+
+        System.out.format("%,d lines, %,d bytes, %,d blocks%n", lines, originalSize, blocks);
+        System.out.format("%-8s %14s %7s %14s %14s %12s%n", "format", "size", "ratio", "write lines/s", "scan lines/s", "sample ms");
+        report("gzip", Files.size(gz), originalSize, lines, t1 - t0, gzScanned, t3 - t2, t5 - t4);
+        report("blocks", Files.size(blk), originalSize, lines, t2 - t1, blkScanned[0], t4 - t3, t6 - t5);
+    }
+
+    private static void report(String name, long size, long originalSize, long lines, long writeNanos,
+                               long scanned, long scanNanos, long sampleNanos) {
+        System.out.format("%-8s %,14d %7.2f %,14.0f %,14.0f %,12.1f%n", name, size, (double) originalSize / size,
+                lines * 1e9 / writeNanos, scanned * 1e9 / scanNanos, sampleNanos / 1e6);
+    }
+
+    private static BufferedReader gzipReader(Path gz) throws IOException {
+        return new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(gz), 64 * 1024), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/*
+ Compares BufferedReader.readLine with FastLineReader.readLine on three generated corpora:
+
+    ascii         plain English-like words
+    mostly-ascii  the same, with about one word in fifty accented (cafe with an acute e)
+    multilingual  a mix of Latin, Greek, Cyrillic, CJK and emoji words
+
+ Each reader is run a few times per corpus and the best time is reported, along with a
+ check that both produced the same lines.
+
+ Usage: DecodeBenchmark [lines per corpus]
+ */
+public class DecodeBenchmark {
+
+    private static final String[] ASCII_WORDS = {
+            "mares", "eat", "oats", "and", "does", "little", "lambs", "ivy", "a", "kid", "will", "too"
+    };
+    private static final String[] ACCENTED_WORDS = {"caf\u00e9", "na\u00efve", "r\u00e9sum\u00e9", "\u00fcber"};
+    private static final String[] OTHER_WORDS = {
+            "\u03ba\u03b1\u03bb\u03b7\u03bc\u03ad\u03c1\u03b1", "\u043f\u0440\u0438\u0432\u0435\u0442",
+            "\u4f60\u597d\u4e16\u754c", "\u3053\u3093\u306b\u3061\u306f", "\ud83d\ude00", "hello"
+    };
+
+    private interface LineSource extends AutoCloseable {
+        String readLine() throws IOException;
+
+        void close() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int lines = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.format("%-14s %10s %16s %16s %8s%n", "corpus", "MB", "BufferedReader", "FastLineReader", "speedup");
+        bench("ascii", corpus(lines, 0), lines);
+        bench("mostly-ascii", corpus(lines, 1), lines);
+        bench("multilingual", corpus(lines, 2), lines);
+    }
+
+    private static void bench(String name, Path file, int lines) throws IOException {
+        try {
+            double mb = Files.size(file) / (1024.0 * 1024.0);
+            long slow = Long.MAX_VALUE;
+            long fast = Long.MAX_VALUE;
+            long slowHash = 0;
+            long fastHash = 0;
+            for (int round = 0; round < 5; round++) {
+                long t0 = System.nanoTime();
+                slowHash = read(() -> {
+                    BufferedReader r = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+                    return new LineSource() {
+                        public String readLine() throws IOException {
+                            return r.readLine();
+                        }
+
+                        public void close() throws IOException {
+                            r.close();
+                        }
+                    };
+                });
+                long t1 = System.nanoTime();
+                fastHash = read(() -> {
+                    FastLineReader r = FastLineReader.open(file);
+                    return new LineSource() {
+                        public String readLine() throws IOException {
+                            return r.readLine();
+                        }
+
+                        public void close() throws IOException {
+                            r.close();
+                        }
+                    };
+                });
+                long t2 = System.nanoTime();
+                slow = Math.min(slow, t1 - t0);
+                fast = Math.min(fast, t2 - t1);
+            }
+            if (slowHash != fastHash) {
+                throw new IllegalStateException(name + ": readers disagree");
+            }
+            System.out.format("%-14s %10.1f %11.0f MB/s %11.0f MB/s %7.2fx%n", name, mb,
+                    mb / (slow / 1e9), mb / (fast / 1e9), (double) slow / fast);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private interface Opener {
+        LineSource open() throws IOException;
+    }
+
+    /* Reads every line and returns a hash of them all, so the work cannot be optimised away. */
+    private static long read(Opener opener) throws IOException {
+        long hash = 0;
+        try (LineSource source = opener.open()) {
+            for (String line = source.readLine(); line != null; line = source.readLine()) {
+                hash = hash * 31 + line.hashCode();
+            }
+        }
+        return hash;
+    }
+
+    /* kind 0 = ascii, 1 = mostly ascii, 2 = multilingual */
+    private static Path corpus(int lines, int kind) throws IOException {
+        Random random = new Random(kind);
+        Path file = Files.createTempFile("decode-" + kind, ".txt");
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < lines; i++) {
+                int words = 3 + random.nextInt(12);
+                for (int w = 0; w < words; w++) {
+                    if (w > 0) {
+                        out.write(' ');
+                    }
+                    String[] from = ASCII_WORDS;
+                    if (kind == 1 && random.nextInt(50) == 0) {
+                        from = ACCENTED_WORDS;
+                    } else if (kind == 2) {
+                        from = OTHER_WORDS;
+                    }
+                    out.write(from[random.nextInt(from.length)]);
+                }
+                out.write('\n');
+            }
+        }
+        return file;
+    }
+}
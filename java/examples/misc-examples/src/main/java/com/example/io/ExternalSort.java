@@ -0,0 +1,315 @@
+package com.example.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/*
+ Sorts the lines of a text file that does not fit in memory.
+
+    1. Runs: lines are read into chunks of at most memoryBudget / (parallelism + 1)
+       estimated bytes. Each full chunk is sorted and written to a temporary file on a
+       worker thread while the reader fills the next one, so up to `parallelism` runs are
+       being sorted at once and memory stays within the budget.
+    2. Merge: the runs are merged through a priority queue holding the current line of
+       each run, each read through its own BufferedReader. With more than fanIn runs,
+       groups of fanIn are merged into bigger runs first.
+
+ Options:
+    ignoreCase  order with String.CASE_INSENSITIVE_ORDER, i.e. compareToIgnoreCase, as
+                OracleQuestions1.FindDupsAnswer does
+    distinct    drop lines that compare equal to the previous one (so with ignoreCase,
+                "Oats" and "oats" are duplicates). As with the TreeSet in
+                FindDupsAnswer, the first occurrence in the input is the one kept: runs
+                are sorted stably, and equal lines from different runs come out in run
+                order.
+
+ Usage: ExternalSort input output [--ignore-case] [--distinct] [--memory MB] [--threads n]
+ */
+public class ExternalSort {
+
+    // rough heap cost of a String in a list: headers, array and the reference to it
+    private static final int STRING_OVERHEAD = 64;
+
+    private final long memoryBudget;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private int fanIn = 128;
+    private boolean ignoreCase;
+    private boolean distinct;
+    private Path tempDir;
+
+    public ExternalSort(long memoryBudget) {
+        if (memoryBudget < 1) {
+            throw new IllegalArgumentException("memoryBudget must be positive: " + memoryBudget);
+        }
+        this.memoryBudget = memoryBudget;
+    }
+
+    public ExternalSort ignoreCase(boolean ignoreCase) {
+        this.ignoreCase = ignoreCase;
+        return this;
+    }
+
+    public ExternalSort distinct(boolean distinct) {
+        this.distinct = distinct;
+        return this;
+    }
+
+    public ExternalSort parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    public ExternalSort fanIn(int fanIn) {
+        if (fanIn < 2) {
+            throw new IllegalArgumentException("fanIn must be at least 2: " + fanIn);
+        }
+        this.fanIn = fanIn;
+        return this;
+    }
+
+    /* Where runs are spilled; the system temporary directory by default. */
+    public ExternalSort tempDir(Path tempDir) {
+        this.tempDir = tempDir;
+        return this;
+    }
+
+    private Comparator<String> comparator() {
+        return ignoreCase ? String.CASE_INSENSITIVE_ORDER : Comparator.naturalOrder();
+    }
+
+    /* Sorts input into output and returns the number of lines written. */
+    public long sort(Path input, Path output) throws IOException, InterruptedException {
+        List<Path> runs = new ArrayList<>();
+        // the runs written by merge passes, including one a failed merge left half written
+        List<Path> mergedRuns = new ArrayList<>();
+        try {
+            List<String> last = createRuns(input, runs);
+            if (last != null) {
+                // everything fitted in one chunk: no need to touch the disk twice
+                return writeLines(last, output);
+            }
+            while (runs.size() > fanIn) {
+                List<Path> merged = new ArrayList<>();
+                for (int i = 0; i < runs.size(); i += fanIn) {
+                    List<Path> group = runs.subList(i, Math.min(runs.size(), i + fanIn));
+                    Path run = newTempFile();
+                    merged.add(run);
+                    mergedRuns.add(run);
+                    merge(group, run);
+                    for (Path p : group) {
+                        Files.deleteIfExists(p);
+                    }
+                }
+                runs = merged;
+            }
+            return merge(runs, output);
+        } finally {
+            for (Path p : runs) {
+                Files.deleteIfExists(p);
+            }
+            for (Path p : mergedRuns) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    /*
+     Spills sorted runs into `runs`, in input order. If the whole input fits in a single
+     chunk it is returned sorted instead and nothing is spilled.
+     */
+    private List<String> createRuns(Path input, List<Path> runs) throws IOException, InterruptedException {
+        long chunkBudget = Math.max(1, memoryBudget / (parallelism + 1));
+        ExecutorService pool = Executors.newFixedThreadPool(parallelism);
+        // one permit per chunk that may be in memory being sorted
+        Semaphore inFlight = new Semaphore(parallelism);
+        List<Future<?>> pending = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            List<String> chunk = new ArrayList<>();
+            long chunkBytes = 0;
+            for (String line = in.readLine(); line != null; line = in.readLine()) {
+                chunk.add(line);
+                chunkBytes += STRING_OVERHEAD + 2L * line.length();
+                if (chunkBytes >= chunkBudget) {
+                    spill(chunk, runs, pool, inFlight, pending);
+                    chunk = new ArrayList<>();
+                    chunkBytes = 0;
+                }
+            }
+            if (runs.isEmpty()) {
+                return sortChunk(chunk);
+            }
+            if (!chunk.isEmpty()) {
+                spill(chunk, runs, pool, inFlight, pending);
+            }
+            for (Future<?> f : pending) {
+                f.get();
+            }
+            return null;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof UncheckedIOException ? ((UncheckedIOException) cause).getCause()
+                    : new IOException("sorting a run failed", cause);
+        } finally {
+            // wait for runs still being written, so that none is created after the cleanup
+            pool.shutdownNow();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void spill(List<String> chunk, List<Path> runs, ExecutorService pool, Semaphore inFlight,
+                       List<Future<?>> pending) throws IOException, InterruptedException {
+        Path run = newTempFile();
+        runs.add(run);
+        inFlight.acquire();
+        pending.add(pool.submit(() -> {
+            try {
+                writeLines(sortChunk(chunk), run);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                inFlight.release();
+            }
+        }));
+    }
+
+    /* List.sort is a stable merge sort, so equal lines keep their input order. */
+    private List<String> sortChunk(List<String> chunk) {
+        chunk.sort(comparator());
+        if (!distinct) {
+            return chunk;
+        }
+        Comparator<String> cmp = comparator();
+        List<String> unique = new ArrayList<>(chunk.size());
+        for (String s : chunk) {
+            if (unique.isEmpty() || cmp.compare(unique.get(unique.size() - 1), s) != 0) {
+                unique.add(s);
+            }
+        }
+        return unique;
+    }
+
+    private long writeLines(List<String> lines, Path output) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            for (String s : lines) {
+                out.write(s);
+                out.newLine();
+            }
+        }
+        return lines.size();
+    }
+
+    /* The current line of one run in the merge. */
+    private static final class Head {
+        final int run;
+        final BufferedReader reader;
+        String line;
+
+        Head(int run, BufferedReader reader) {
+            this.run = run;
+            this.reader = reader;
+        }
+    }
+
+    private long merge(List<Path> runs, Path output) throws IOException {
+        Comparator<String> cmp = comparator();
+        // ties go to the earlier run, which keeps the merge stable
+        PriorityQueue<Head> heap = new PriorityQueue<>(Math.max(1, runs.size()), (a, b) -> {
+            int c = cmp.compare(a.line, b.line);
+            return c != 0 ? c : Integer.compare(a.run, b.run);
+        });
+        List<BufferedReader> readers = new ArrayList<>();
+        long written = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            // split the budget between the run readers, but keep buffers at least 8 KB
+            int bufferSize = (int) Math.max(8192, Math.min(1 << 20, memoryBudget / (2L * (runs.size() + 1))));
+            for (int i = 0; i < runs.size(); i++) {
+                BufferedReader r = new BufferedReader(
+                        Files.newBufferedReader(runs.get(i), StandardCharsets.UTF_8), bufferSize);
+                readers.add(r);
+                Head h = new Head(i, r);
+                h.line = r.readLine();
+                if (h.line != null) {
+                    heap.add(h);
+                }
+            }
+            String previous = null;
+            while (!heap.isEmpty()) {
+                Head h = heap.poll();
+                if (!distinct || previous == null || cmp.compare(previous, h.line) != 0) {
+                    out.write(h.line);
+                    out.newLine();
+                    written++;
+                    previous = h.line;
+                }
+                h.line = h.reader.readLine();
+                if (h.line != null) {
+                    heap.add(h);
+                }
+            }
+        } finally {
+            for (BufferedReader r : readers) {
+                r.close();
+            }
+        }
+        return written;
+    }
+
+    private Path newTempFile() throws IOException {
+        return tempDir == null ? Files.createTempFile("sort-run", ".txt")
+                : Files.createTempFile(tempDir, "sort-run", ".txt");
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        long memoryMb = 256;
+        boolean ignoreCase = false;
+        boolean distinct = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--ignore-case":
+                    ignoreCase = true;
+                    break;
+                case "--distinct":
+                    distinct = true;
+                    break;
+                case "--memory":
+                    memoryMb = Long.parseLong(args[++i]);
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option: " + args[i]);
+            }
+        }
+        ExternalSort sort = new ExternalSort(memoryMb * 1024 * 1024)
+                .ignoreCase(ignoreCase)
+                .distinct(distinct)
+                .parallelism(threads);
+
+        long start = System.nanoTime();
+        long lines = sort.sort(input, output);
+        System.out.format("%,d lines sorted in %,d ms%n", lines, (System.nanoTime() - start) / 1_000_000);
+    }
+}
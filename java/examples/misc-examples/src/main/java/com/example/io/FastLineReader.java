@@ -0,0 +1,143 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/*
+ Replacement for BufferedReader.readLine on UTF-8 (and ASCII) input.
+
+ BufferedReader decodes every byte into a char buffer through a CharsetDecoder, scans the
+ chars for a terminator, copies the line into a StringBuilder and then into a String.
+ This reader keeps the raw bytes, finds '\n' eight bytes at a time and turns each line
+ into a String with a single Utf8.decode - for ASCII lines that is just an array copy.
+
+ Lines end at "\n" or "\r\n". Unlike BufferedReader a lone '\r' is not a line break.
+
+ openAscii() reads exactly as Files.newBufferedReader(path, US_ASCII) does instead: a lone
+ '\r' ends a line too, and a byte outside ASCII throws MalformedInputException. That costs
+ one more SWAR scan per line, for '\r'.
+ */
+public class FastLineReader implements Closeable {
+
+    private final InputStream in;
+    private final boolean ascii;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private boolean eof;
+    // ascii only: the last line ended at a '\r' that was the last byte read, so a '\n'
+    // coming next belongs to it
+    private boolean skipLF;
+
+    public FastLineReader(InputStream in) {
+        this(in, 64 * 1024);
+    }
+
+    public FastLineReader(InputStream in, int bufferSize) {
+        this(in, bufferSize, false);
+    }
+
+    private FastLineReader(InputStream in, int bufferSize, boolean ascii) {
+        this.in = in;
+        this.ascii = ascii;
+        this.buffer = new byte[bufferSize];
+    }
+
+    public static FastLineReader open(Path path) throws IOException {
+        return new FastLineReader(Files.newInputStream(path));
+    }
+
+    /* Reads like BufferedReader on US-ASCII: lone '\r' breaks lines, non-ASCII bytes are errors. */
+    public static FastLineReader openAscii(Path path) throws IOException {
+        return new FastLineReader(Files.newInputStream(path), 64 * 1024, true);
+    }
+
+    /* The next line without its terminator, or null at the end of the input. */
+    public String readLine() throws IOException {
+        if (skipLF) {
+            skipLF = false;
+            if (position == limit && !eof) {
+                fill();
+            }
+            if (position < limit && buffer[position] == '\n') {
+                position++;
+            }
+        }
+        int scanned = position;
+        for (;;) {
+            int nl = Utf8.indexOf(buffer, (byte) '\n', scanned, limit);
+            if (ascii) {
+                int cr = Utf8.indexOf(buffer, (byte) '\r', scanned, nl >= 0 ? nl : limit);
+                if (cr >= 0) {
+                    String line = decode(position, cr);
+                    position = cr + 1;
+                    if (position < limit) {
+                        if (buffer[position] == '\n') {
+                            position++;
+                        }
+                    } else {
+                        skipLF = true;
+                    }
+                    return line;
+                }
+            }
+            if (nl >= 0) {
+                String line = decode(position, nl);
+                position = nl + 1;
+                return line;
+            }
+            if (eof) {
+                if (position == limit) {
+                    return null;
+                }
+                String line = decode(position, limit);
+                position = limit;
+                return line;
+            }
+            scanned = limit - position;
+            fill();
+        }
+    }
+
+    private String decode(int start, int end) throws MalformedInputException {
+        if (ascii) {
+            if (Utf8.firstNonAscii(buffer, start, end - start) >= 0) {
+                throw new MalformedInputException(1);
+            }
+            return new String(buffer, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        return Utf8.decode(buffer, start, end - start);
+    }
+
+    /* Moves the unread bytes to the front (growing the buffer for a long line) and reads more. */
+    private void fill() throws IOException {
+        int unread = limit - position;
+        if (unread == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, unread);
+        }
+        position = 0;
+        limit = unread;
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
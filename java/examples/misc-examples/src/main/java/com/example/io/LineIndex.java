@@ -0,0 +1,280 @@
+package com.example.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/*
+ Random access to the lines of a text file through a sidecar index of line offsets.
+
+ The index lives next to the file as <file>.lidx:
+
+    int   magic 'LIDX'
+    int   version
+    long  size of the file when it was indexed
+    long  modification time of the file (millis) when it was indexed
+    long  CRC32 of the last (up to) 4 KB that were indexed
+    long  number of lines
+    long  offset of each line, one after another
+
+ open() checks the size and modification time against the file. If they match, the
+ offsets are memory-mapped as they are - no scan, and only the pages that are touched
+ are ever read. If the file has only grown and the CRC of the old tail still matches,
+ it was appended to: only the new part is scanned and its offsets are appended to the
+ index. Anything else rebuilds the index from scratch.
+
+ A current index is only opened for reading, so it works on read-only directories and
+ media and costs no fsync. The index is opened for writing, and forced to disk, only
+ when it is built, extended or has its header rewritten.
+
+ Fetching line n is then offset(n), offset(n + 1) and one positional read.
+
+ The index costs 8 bytes per line: a tenth of an 80 column text file, but more than the
+ file itself for lines under 8 bytes. Fixed-width offsets are what make line n a single
+ lookup; a delta-encoded index would be smaller but need a scan from a checkpoint.
+ Offsets are mapped in 1 GB pages, so files with more than 2^27 lines work too.
+ */
+public class LineIndex implements Closeable {
+
+    public static final String SUFFIX = ".lidx";
+
+    private static final int MAGIC = 0x4C494458;
+    private static final int VERSION = 1;
+    private static final int HEADER = 40;
+    private static final int TAIL_BYTES = 4096;
+    private static final int PAGE_SHIFT = 27;
+    private static final int PAGE_LONGS = 1 << PAGE_SHIFT;
+
+    private final FileChannel file;
+    private final long fileSize;
+    private final long lineCount;
+    private final LongBuffer[] pages;
+
+    private LineIndex(FileChannel file, long fileSize, long lineCount, LongBuffer[] pages) {
+        this.file = file;
+        this.fileSize = fileSize;
+        this.lineCount = lineCount;
+        this.pages = pages;
+    }
+
+    public static Path indexPath(Path file) {
+        return file.resolveSibling(file.getFileName() + SUFFIX);
+    }
+
+    /* Opens the index for the file, building or extending it first if it is stale. */
+    public static LineIndex open(Path path) throws IOException {
+        Path indexPath = indexPath(path);
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = file.size();
+            long mtime = Files.getLastModifiedTime(path).toMillis();
+
+            try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                Header h = Header.read(index);
+                if (h != null && h.size == size && h.mtime == mtime && h.tailCrc == tailCrc(file, size)) {
+                    return new LineIndex(file, size, h.lines, map(index, h.lines));
+                }
+            } catch (NoSuchFileException e) {
+                // not built yet
+            }
+
+            try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Header h = Header.read(index);
+                boolean rewritten = h != null && h.size == size && h.mtime != mtime;
+                if (h == null || h.size > size || rewritten || h.tailCrc != tailCrc(file, h.size)) {
+                    h = rebuild(file, index, size);
+                } else if (h.size < size) {
+                    h = extend(file, index, h, size);
+                }
+                if (h.size != size || h.mtime != mtime) {
+                    h.size = size;
+                    h.mtime = mtime;
+                    h.tailCrc = tailCrc(file, size);
+                    h.write(index);
+                }
+                index.force(true);
+                return new LineIndex(file, size, h.lines, map(index, h.lines));
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public long lineCount() {
+        return lineCount;
+    }
+
+    /* File position of the first byte of line n (0-based). */
+    public long offset(long n) {
+        if (n < 0 || n >= lineCount) {
+            throw new IndexOutOfBoundsException("line " + n + ", lines " + lineCount);
+        }
+        return pages[(int) (n >>> PAGE_SHIFT)].get((int) (n & (PAGE_LONGS - 1)));
+    }
+
+    /* The bytes of line n without its terminator. */
+    public byte[] lineBytes(long n) throws IOException {
+        long start = offset(n);
+        long end = n + 1 < lineCount ? offset(n + 1) : fileSize;
+        ByteBuffer buf = ByteBuffer.allocate((int) (end - start));
+        while (buf.hasRemaining()) {
+            if (file.read(buf, start + buf.position()) < 0) {
+                throw new IOException("file shrank while reading line " + n);
+            }
+        }
+        int length = buf.limit();
+        if (length > 0 && buf.get(length - 1) == '\n') {
+            length--;
+        }
+        if (length > 0 && buf.get(length - 1) == '\r') {
+            length--;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(0, bytes);
+        return bytes;
+    }
+
+    /* Line n decoded as UTF-8. */
+    public String line(long n) throws IOException {
+        return new String(lineBytes(n), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    private static final class Header {
+        long size;
+        long mtime;
+        long tailCrc;
+        long lines;
+
+        /* Null if there is no usable header. */
+        static Header read(FileChannel index) throws IOException {
+            if (index.size() < HEADER) {
+                return null;
+            }
+            ByteBuffer b = ByteBuffer.allocate(HEADER);
+            while (b.hasRemaining() && index.read(b, b.position()) > 0) {
+                // keep reading
+            }
+            b.flip();
+            if (b.getInt() != MAGIC || b.getInt() != VERSION) {
+                return null;
+            }
+            Header h = new Header();
+            h.size = b.getLong();
+            h.mtime = b.getLong();
+            h.tailCrc = b.getLong();
+            h.lines = b.getLong();
+            if (index.size() < HEADER + h.lines * 8) {
+                return null;
+            }
+            return h;
+        }
+
+        void write(FileChannel index) throws IOException {
+            ByteBuffer b = ByteBuffer.allocate(HEADER);
+            b.putInt(MAGIC).putInt(VERSION).putLong(size).putLong(mtime).putLong(tailCrc).putLong(lines);
+            b.flip();
+            while (b.hasRemaining()) {
+                index.write(b, b.position());
+            }
+        }
+    }
+
+    private static Header rebuild(FileChannel file, FileChannel index, long size) throws IOException {
+        Header h = new Header();
+        index.truncate(HEADER);
+        h.lines = scan(file, index, 0, size, 0);
+        h.size = size;
+        return h;
+    }
+
+    /*
+     The file was appended to. If the old content ended in the middle of a line that line
+     may have grown, so its offset is dropped and scanning restarts at it.
+     */
+    private static Header extend(FileChannel file, FileChannel index, Header h, long size) throws IOException {
+        long lines = h.lines;
+        long from = h.size;
+        if (lines > 0 && !endsWithNewline(file, h.size)) {
+            lines--;
+            ByteBuffer b = ByteBuffer.allocate(8);
+            index.read(b, HEADER + lines * 8);
+            from = b.getLong(0);
+        }
+        index.truncate(HEADER + lines * 8);
+        h.lines = lines + scan(file, index, from, size, lines);
+        h.size = size;
+        return h;
+    }
+
+    /* Appends the offsets of the lines starting in [from, size) and returns how many there were. */
+    private static long scan(FileChannel file, FileChannel index, long from, long size, long existing) throws IOException {
+        index.position(HEADER + existing * 8);
+        OutputStream raw = Channels.newOutputStream(index);
+        // not closed: that would close the index channel
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(raw, 64 * 1024));
+        long n = 0;
+        if (from < size) {
+            try (MappedLineReader reader = new MappedLineReader(file, from, size, MappedLineReader.DEFAULT_WINDOW, false)) {
+                for (LineView line = reader.next(); line != null; line = reader.next()) {
+                    out.writeLong(line.fileOffset());
+                    n++;
+                }
+            }
+        }
+        out.flush();
+        return n;
+    }
+
+    private static boolean endsWithNewline(FileChannel file, long size) throws IOException {
+        if (size == 0) {
+            return true;
+        }
+        ByteBuffer b = ByteBuffer.allocate(1);
+        file.read(b, size - 1);
+        return b.get(0) == '\n';
+    }
+
+    private static long tailCrc(FileChannel file, long size) throws IOException {
+        long start = Math.max(0, size - TAIL_BYTES);
+        ByteBuffer b = ByteBuffer.allocate((int) (size - start));
+        while (b.hasRemaining()) {
+            if (file.read(b, start + b.position()) < 0) {
+                return -1;
+            }
+        }
+        CRC32 crc = new CRC32();
+        b.flip();
+        crc.update(b);
+        return crc.getValue();
+    }
+
+    private static LongBuffer[] map(FileChannel index, long lines) throws IOException {
+        int pageCount = (int) ((lines + PAGE_LONGS - 1) >>> PAGE_SHIFT);
+        LongBuffer[] pages = new LongBuffer[pageCount];
+        for (int i = 0; i < pageCount; i++) {
+            long first = (long) i << PAGE_SHIFT;
+            long count = Math.min(PAGE_LONGS, lines - first);
+            pages[i] = index.map(FileChannel.MapMode.READ_ONLY, HEADER + first * 8, count * 8).asLongBuffer();
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.io;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ A window onto one line of a file, without copying it.
+
+ The view points straight into the reader's mapped buffer and is reused for every line,
+ so it is only valid until the reader moves on. Call toString() to keep a line: that is
+ the only place a String is allocated.
+
+ As a CharSequence the view is byte-for-byte: charAt(i) is the i-th byte as an unsigned
+ value. That is exact for ASCII (and Latin-1) text; for other UTF-8 text use toString(),
+ which decodes properly.
+ */
+public final class LineView implements CharSequence {
+
+    private ByteBuffer buffer;
+    private int offset;
+    private int length;
+    private long fileOffset;
+
+    void set(ByteBuffer buffer, int offset, int length, long fileOffset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.fileOffset = fileOffset;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (byteAt(index) & 0xff);
+    }
+
+    public byte byteAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return buffer.get(offset + index);
+    }
+
+    /* Position of the first byte of the line in the file. */
+    public long fileOffset() {
+        return fileOffset;
+    }
+
+    /* Copies the line's bytes (without the line terminator) into dst at dstOffset. */
+    public void copyBytes(byte[] dst, int dstOffset) {
+        buffer.get(offset, dst, dstOffset, length);
+    }
+
+    public byte[] toBytes() {
+        byte[] bytes = new byte[length];
+        copyBytes(bytes, 0);
+        return bytes;
+    }
+
+    /* Copies the sub-range; unlike the view itself the result stays valid. */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end > length || start > end) {
+            throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(offset + start, bytes, 0, bytes.length);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    /* Decodes the line as UTF-8, taking the Latin-1 shortcut for pure ASCII lines. */
+    @Override
+    public String toString() {
+        byte[] bytes = toBytes();
+        return Utf8.decode(bytes, 0, bytes.length);
+    }
+}
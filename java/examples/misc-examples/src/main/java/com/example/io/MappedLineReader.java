@@ -0,0 +1,148 @@
+package com.example.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/*
+ Streams the lines of a file of any size with constant heap use.
+
+ Files.readAllLines decodes every line into a String and keeps them all in a List, so the
+ heap has to hold the whole file (about twice over, as UTF-16). This reader maps a window
+ of the file into memory, finds the '\n' bytes directly in the mapping, and hands out each
+ line as a LineView pointing into it. Nothing is copied or decoded unless the caller asks
+ for it.
+
+ A single mapping is limited to 2 GB, so for larger files the window rolls: when the next
+ line is not completely inside the current window, a new window is mapped starting at
+ that line. A line must therefore fit in one window.
+
+ "\n" and "\r\n" terminators are both stripped; a final line without a terminator is still
+ returned.
+
+ Mapped windows are released by the garbage collector, not by close(). That costs
+ address space rather than heap, which is plentiful on a 64-bit JVM.
+ */
+public class MappedLineReader implements Closeable {
+
+    public static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final boolean ownsChannel;
+    // end of the range being read; the file size unless reading a slice
+    private final long fileSize;
+    private final int windowSize;
+    private final LineView line = new LineView();
+
+    private MappedByteBuffer window;
+    private long windowStart;
+    // position within the window of the next line
+    private int position;
+    private long lineNumber;
+
+    public MappedLineReader(Path path) throws IOException {
+        this(path, DEFAULT_WINDOW);
+    }
+
+    public MappedLineReader(Path path, int windowSize) throws IOException {
+        this(FileChannel.open(path, StandardOpenOption.READ), 0, -1, windowSize, true);
+    }
+
+    /*
+     Reads the lines in [start, end) of an already open channel, which is left open by
+     close(). start must be the beginning of a line. end = -1 means the end of the file.
+     */
+    MappedLineReader(FileChannel channel, long start, long end, int windowSize, boolean ownsChannel) throws IOException {
+        if (windowSize < 1) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        this.channel = channel;
+        this.ownsChannel = ownsChannel;
+        this.fileSize = end < 0 ? channel.size() : end;
+        this.windowSize = windowSize;
+        map(start);
+    }
+
+    /* Returns the next line, or null at the end of the file. The view is reused by the next call. */
+    public LineView next() throws IOException {
+        long lineStart = windowStart + position;
+        if (lineStart >= fileSize) {
+            return null;
+        }
+        int end = indexOfNewline(position);
+        if (end < 0 && windowStart + window.limit() < fileSize) {
+            // the line runs past this window: move the window to start at the line
+            if (position == 0) {
+                throw new IOException("line at offset " + lineStart + " is longer than the "
+                        + windowSize + " byte window");
+            }
+            map(lineStart);
+            end = indexOfNewline(0);
+            if (end < 0 && windowStart + window.limit() < fileSize) {
+                throw new IOException("line at offset " + lineStart + " is longer than the "
+                        + windowSize + " byte window");
+            }
+        }
+
+        int start = position;
+        int length;
+        if (end < 0) {
+            // last line, no terminator
+            length = window.limit() - start;
+            position = window.limit();
+        } else {
+            length = end - start;
+            position = end + 1;
+        }
+        if (length > 0 && window.get(start + length - 1) == '\r') {
+            length--;
+        }
+        lineNumber++;
+        line.set(window, start, length, lineStart);
+        return line;
+    }
+
+    public void forEachLine(Consumer<? super LineView> action) throws IOException {
+        for (LineView l = next(); l != null; l = next()) {
+            action.accept(l);
+        }
+    }
+
+    /* Number of lines returned so far. */
+    public long lineNumber() {
+        return lineNumber;
+    }
+
+    /* End of the range being read: the file size, unless this reader covers a slice. */
+    public long fileSize() {
+        return fileSize;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownsChannel) {
+            channel.close();
+        }
+    }
+
+    private int indexOfNewline(int from) {
+        int limit = window.limit();
+        for (int i = from; i < limit; i++) {
+            if (window.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void map(long start) throws IOException {
+        long size = Math.min(windowSize, fileSize - start);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        windowStart = start;
+        position = 0;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+ Processes the lines of a file on all cores.
+
+ The file is cut into chunks of roughly chunkSize bytes. Each cut is moved forward to just
+ after the next '\n', so every line belongs to exactly one chunk and no line is split.
+ The chunks are then read concurrently as fork/join tasks, each with its own
+ MappedLineReader over its slice of the file, all sharing one FileChannel.
+
+ Two ways to consume the lines:
+
+    forEachLine(action)   calls action for every line, from many threads at once, in no
+                          particular order; the action must be thread safe
+    reduce(...)           each chunk folds its lines into its own accumulator, and the
+                          accumulators are merged pairwise up the task tree - the
+                          parallel equivalent of a for loop over the lines with a local
+                          variable, and no locking needed in the accumulator
+
+ The LineView handed to either is only valid during the call; see LineView.
+
+ Usage: ParallelLineProcessor file
+ */
+public class ParallelLineProcessor {
+
+    public static final int DEFAULT_CHUNK = 32 * 1024 * 1024;
+
+    private final Path path;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public ParallelLineProcessor(Path path) {
+        this(path, DEFAULT_CHUNK, ForkJoinPool.commonPool());
+    }
+
+    public ParallelLineProcessor(Path path, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        this.path = path;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    /* Line and byte totals; bytes excludes line terminators. */
+    public static final class Counts {
+        public long lines;
+        public long bytes;
+
+        @Override
+        public String toString() {
+            return lines + " lines, " + bytes + " bytes";
+        }
+    }
+
+    public void forEachLine(Consumer<? super LineView> action) throws IOException {
+        reduce(() -> null, (ignored, line) -> action.accept(line), (a, b) -> null);
+    }
+
+    public <A> A reduce(Supplier<A> identity, BiConsumer<A, ? super LineView> accumulator, BinaryOperator<A> combiner)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] bounds = chunkBounds(channel);
+            return pool.invoke(new ChunkTask<>(channel, bounds, 0, bounds.length - 1, identity, accumulator, combiner));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    public Counts count() throws IOException {
+        return reduce(Counts::new, (c, line) -> {
+            c.lines++;
+            c.bytes += line.length();
+        }, (a, b) -> {
+            a.lines += b.lines;
+            a.bytes += b.bytes;
+            return a;
+        });
+    }
+
+    /*
+     Chunk i is [bounds[i], bounds[i + 1]). A line longer than a chunk swallows the cuts
+     that fall inside it, so there may be fewer chunks than size / chunkSize.
+     */
+    long[] chunkBounds(FileChannel channel) throws IOException {
+        long size = channel.size();
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long last = 0;
+        for (long cut = chunkSize; cut < size; cut += chunkSize) {
+            if (cut <= last) {
+                continue;
+            }
+            long next = afterNextNewline(channel, cut - 1, size);
+            if (next > last && next < size) {
+                bounds.add(next);
+                last = next;
+            }
+        }
+        bounds.add(size);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private static long afterNextNewline(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(64 * 1024);
+        long pos = from;
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) {
+                break;
+            }
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    private static final class ChunkTask<A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long[] bounds;
+        private final int from;
+        private final int to;
+        private final Supplier<A> identity;
+        private final BiConsumer<A, ? super LineView> accumulator;
+        private final BinaryOperator<A> combiner;
+
+        ChunkTask(FileChannel channel, long[] bounds, int from, int to, Supplier<A> identity,
+                  BiConsumer<A, ? super LineView> accumulator, BinaryOperator<A> combiner) {
+            this.channel = channel;
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+        }
+
+        @Override
+        protected A compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                ChunkTask<A> left = new ChunkTask<>(channel, bounds, from, mid, identity, accumulator, combiner);
+                ChunkTask<A> right = new ChunkTask<>(channel, bounds, mid, to, identity, accumulator, combiner);
+                left.fork();
+                A r = right.compute();
+                return combiner.apply(left.join(), r);
+            }
+            A acc = identity.get();
+            long start = bounds[from];
+            long end = bounds[to];
+            // a window of at least the chunk size, so a chunk normally needs one mapping
+            int window = (int) Math.min(Integer.MAX_VALUE, Math.max(end - start, 1));
+            try (MappedLineReader reader = new MappedLineReader(channel, start, end, window, false)) {
+                for (LineView line = reader.next(); line != null; line = reader.next()) {
+                    accumulator.accept(acc, line);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return acc;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ParallelLineProcessor processor = new ParallelLineProcessor(Paths.get(args[0]));
+        long start = System.nanoTime();
+        Counts counts = processor.count();
+        long elapsed = System.nanoTime() - start;
+        System.out.format("%s in %,d ms (%d threads)%n", counts, elapsed / 1_000_000,
+                ForkJoinPool.commonPool().getParallelism());
+    }
+}
@@ -2,17 +2,35 @@ package com.example.io;
 
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.List;
 
+/*
+ Usage: Slurp [--mapped] [file]
+
+ By default the whole file is read into memory with Files.readAllLines. With --mapped the
+ lines are streamed through a MappedLineReader instead, so heap use stays flat however
+ large the file is.
+ */
 public class Slurp {
     public static void main(String[] args) {
+        boolean mapped = args.length > 0 && args[0].equals("--mapped");
+        int fileArg = mapped ? 1 : 0;
+        Path path = Paths.get(args.length > fileArg ? args[fileArg] : "src/io/testfile.txt");
 
-        List<String> lines ;
         try {
-            lines = Files.readAllLines(Paths.get("src/io/testfile.txt"), StandardCharsets.UTF_8);
-            for(String s: lines) {
-                System.out.printf("Read line: [%s]\n", s);
+            if (mapped) {
+                try (MappedLineReader reader = new MappedLineReader(path)) {
+                    for (LineView line = reader.next(); line != null; line = reader.next()) {
+                        System.out.printf("Read line: [%s]\n", line);
+                    }
+                }
+            } else {
+                List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+                for (String s : lines) {
+                    System.out.printf("Read line: [%s]\n", s);
+                }
             }
         } catch (java.io.IOException e) {
             System.out.printf("Could not read from file - %s\n", e.getMessage());
@@ -0,0 +1,80 @@
+package com.example.io;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/*
+ Fast bytes-to-String decoding for line readers.
+
+ Most text we read is pure ASCII, and an ASCII byte is also its own Latin-1 character -
+ which is exactly how the JVM stores a compact String internally. So decode() first
+ checks the bytes eight at a time (one long per step; any byte with its high bit set makes
+ the word & 0x8080808080808080 non-zero), and when there is none it builds the String as
+ Latin-1, which is a straight array copy with no decoding at all.
+
+ Only when a high bit is found does it fall back to the JDK's validating UTF-8 decoder
+ (new String(bytes, UTF_8)), which turns malformed input into U+FFFD. Its multi-byte
+ path is backed by JVM intrinsics and beats a scalar decoder written in Java.
+
+ indexOf finds a byte (e.g. '\n') with the same eight-at-a-time trick.
+ */
+public final class Utf8 {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS = 0x0101010101010101L;
+
+    private Utf8() {
+    }
+
+    public static String decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    public static String decode(byte[] bytes, int offset, int length) {
+        if (firstNonAscii(bytes, offset, length) < 0) {
+            return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+        }
+        return new String(bytes, offset, length, StandardCharsets.UTF_8);
+    }
+
+    /* Index of the first byte with its high bit set, or -1 if all bytes are ASCII. */
+    public static int firstNonAscii(byte[] bytes, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        for (; i + 8 <= end; i += 8) {
+            long high = (long) LONGS.get(bytes, i) & HIGH_BITS;
+            if (high != 0) {
+                return i + (Long.numberOfTrailingZeros(high) >>> 3);
+            }
+        }
+        for (; i < end; i++) {
+            if (bytes[i] < 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /* Index of the first occurrence of b in [from, to), or -1. */
+    public static int indexOf(byte[] bytes, byte b, int from, int to) {
+        long pattern = (b & 0xffL) * LOW_BITS;
+        int i = from;
+        for (; i + 8 <= to; i += 8) {
+            long x = (long) LONGS.get(bytes, i) ^ pattern;
+            // non-zero exactly at the first zero byte of x (later bytes may be false hits)
+            long found = (x - LOW_BITS) & ~x & HIGH_BITS;
+            if (found != 0) {
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+        for (; i < to; i++) {
+            if (bytes[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.system;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/*
+ A read-only view of a LogStore's values, for code that looks keys up far more often
+ than they change - configuration, like PersistentEcho's value.
+
+ The values are held in an immutable Snapshot published through one AtomicReference.
+ A lookup is a volatile read and a hash lookup: no lock, no file access, and no
+ contention between reader threads (where Properties, a synchronized Hashtable, makes
+ every reader take the same monitor). Code that needs several keys to agree takes
+ snapshot() once and reads them all from it.
+
+ A WatchService thread watches the log's directory. When the log changes - appended to
+ by this or another process, or replaced by a compaction - the thread reads what is
+ new (see LogStore.Follower), builds a new snapshot and swaps it in. Readers see either
+ the old snapshot or the new one, never a mix, and never a half-written value: a record
+ still being appended fails its CRC and waits for the next change. Rewrites of the log
+ itself (compaction) are written to a temporary file and renamed over it atomically.
+
+ How quickly a change is seen depends on the WatchService: on Linux (inotify) it is
+ immediate, on platforms where it polls it can take seconds.
+ */
+public class LiveConfig implements Closeable {
+
+    /* The values as of one moment. */
+    public static final class Snapshot {
+
+        private final Map<String, String> values;
+        private final long version;
+
+        private Snapshot(Map<String, String> values, long version) {
+            this.values = values;
+            this.version = version;
+        }
+
+        public String get(String key) {
+            return values.get(key);
+        }
+
+        public String get(String key, String defaultValue) {
+            return values.getOrDefault(key, defaultValue);
+        }
+
+        /* Unmodifiable. */
+        public Map<String, String> values() {
+            return values;
+        }
+
+        /* Goes up by one with each reload that changed something. */
+        public long version() {
+            return version;
+        }
+    }
+
+    private final Path logPath;
+    private final LogStore.Follower follower;
+    private final Map<String, String> latest = new HashMap<>();   // only touched by reload()
+    private final AtomicReference<Snapshot> current;
+    private final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+    private final WatchService watcher;
+    private final Thread watchThread;
+
+    private LiveConfig(Path logPath) throws IOException {
+        this.logPath = logPath.toAbsolutePath();
+        this.follower = new LogStore.Follower(this.logPath);
+        this.current = new AtomicReference<>(new Snapshot(Map.of(), 0));
+        this.watcher = FileSystems.getDefault().newWatchService();
+        this.watchThread = new Thread(this::watch, "live-config-watch");
+        this.watchThread.setDaemon(true);
+    }
+
+    /* Loads the values from the log and starts watching it. */
+    public static LiveConfig open(Path logPath) throws IOException {
+        LiveConfig config = new LiveConfig(logPath);
+        try {
+            config.logPath.getParent().register(config.watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            config.reload();
+        } catch (IOException | RuntimeException e) {
+            config.watcher.close();
+            throw e;
+        }
+        config.watchThread.start();
+        return config;
+    }
+
+    public String get(String key) {
+        return current.get().get(key);
+    }
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /* Called on the watch thread with each new snapshot. */
+    public void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
+
+    /* Reads any changes now rather than waiting for the watcher; returns the current snapshot. */
+    public synchronized Snapshot reload() throws IOException {
+        Snapshot previous = current.get();
+        if (follower.update(latest) && !latest.equals(previous.values)) {
+            // a HashMap that is never modified after it is published is safe to read from
+            // any thread. (Map.copyOf would do too, but its linear probing is several times
+            // slower for keys with clustered hash codes, such as "key1", "key2", ...)
+            Snapshot next = new Snapshot(Collections.unmodifiableMap(new HashMap<>(latest)), previous.version + 1);
+            current.set(next);
+            for (Consumer<Snapshot> listener : listeners) {
+                listener.accept(next);
+            }
+        }
+        return current.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.close();
+        watchThread.interrupt();
+    }
+
+    private void watch() {
+        Path fileName = logPath.getFileName();
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // OVERFLOW means events were lost, so the log may have changed too
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException e) {
+                        // keep serving the last good snapshot
+                        System.err.println("Reloading " + logPath + " failed: " + e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+}
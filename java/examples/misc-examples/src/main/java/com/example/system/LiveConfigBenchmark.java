@@ -0,0 +1,113 @@
+package com.example.system;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Lookups per second from several reader threads:
+
+    Properties   getProperty on a shared Properties (a synchronized Hashtable)
+    LiveConfig   get on a LiveConfig, while another thread keeps writing to the log so
+                 that snapshots are being reloaded and swapped the whole time
+
+ Each reader also checks that every value it sees is complete: values are written as
+ "n:n", so a torn read would show up as two different halves.
+
+ Usage: LiveConfigBenchmark [threads] [seconds]
+ */
+public class LiveConfigBenchmark {
+
+    private static final int KEYS = 1000;
+
+    interface Lookup {
+        String get(String key);
+    }
+
+    interface Update {
+        void write(String key, String value) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Properties props = new Properties();
+        for (int i = 0; i < KEYS; i++) {
+            props.setProperty("key" + i, "0:0");
+        }
+        report("Properties", run(props::getProperty, null, threads, seconds), 0);
+        report("Properties, updated", run(props::getProperty, props::setProperty, threads, seconds), 0);
+
+        Path dir = Files.createTempDirectory("liveconfig");
+        Path log = dir.resolve("config.log");
+        try (LogStore store = LogStore.open(log, LogStoreOptions.defaults()
+                .withSyncPolicy(LogStore.SyncPolicy.NONE));
+             LiveConfig config = LiveConfig.open(log)) {
+            for (int i = 0; i < KEYS; i++) {
+                store.put("key" + i, "0:0");
+            }
+            config.reload();
+            report("LiveConfig", run(config::get, null, threads, seconds), config.snapshot().version());
+            report("LiveConfig, updated", run(config::get, store::put, threads, seconds), config.snapshot().version());
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path p : (Iterable<Path>) files::iterator) {
+                    Files.delete(p);
+                }
+            }
+            Files.delete(dir);
+        }
+    }
+
+    /* Returns lookups per second; with an update, another thread writes a key every millisecond. */
+    private static long run(Lookup lookup, Update update, int threads, int seconds) throws InterruptedException {
+        LongAdder lookups = new LongAdder();
+        AtomicBoolean running = new AtomicBoolean(true);
+        Thread writer = new Thread(() -> {
+            try {
+                for (int n = 1; running.get(); n++) {
+                    update.write("key" + (n % KEYS), n + ":" + n);
+                    Thread.sleep(1);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        if (update != null) {
+            writer.start();
+        }
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            Thread reader = new Thread(() -> {
+                long n = 0;
+                int i = 0;
+                while (running.get()) {
+                    for (int j = 0; j < 1000; j++) {
+                        String value = lookup.get("key" + (i++ % KEYS));
+                        int colon = value.indexOf(':');
+                        if (!value.regionMatches(0, value, colon + 1, colon) || value.length() != 2 * colon + 1) {
+                            throw new AssertionError("torn value " + value);
+                        }
+                    }
+                    n += 1000;
+                }
+                lookups.add(n);
+                done.countDown();
+            });
+            reader.start();
+        }
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        done.await();
+        writer.join();
+        return lookups.sum() / seconds;
+    }
+
+    private static void report(String name, long perSecond, long reloads) {
+        System.out.printf("%-24s %,14d lookups/s   %,d snapshots published%n", name, perSecond, reloads);
+    }
+}
@@ -0,0 +1,906 @@
+package com.example.system;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/*
+ A string key-value store kept as an append-only log, in the style of Bitcask.
+
+ Every put or remove appends one record to the log, so an update costs one small write
+ however many keys there are. An in-memory hash index maps each key to the offset and
+ length of its latest record; a get is one lookup and one positional read.
+
+ The log (<name>):
+
+    int   magic 'KVLG'
+    int   version
+    long  generation, bumped by every compaction
+    then records:
+        int   CRC32 of the rest of the record
+        int   key length
+        int   value length, -1 for a tombstone (a removed key)
+        key and value bytes, UTF-8
+
+ Overwritten and removed records stay in the log as garbage until compaction copies the
+ live records into a new log and swaps it in with an atomic rename. Writes carry on
+ while the copy is made; whatever was appended meanwhile is moved across at the swap.
+ Compaction also writes a hint file (<name>.hint) with the index of the new log:
+
+    int   magic 'KVHT'
+    int   version
+    long  generation of the log it describes
+    long  end of the part of the log it covers
+    int   number of entries
+    then per entry: int key length, key bytes, long packed offset and length
+    int   CRC32 of everything before it
+
+ Opening loads the hint, if its generation matches the log, and then only has to read
+ the log from where the hint ends. Without a usable hint the whole log is read. Either
+ way the read stops at the first record that is incomplete or fails its CRC - a write
+ the process died in the middle of - and the log is truncated there.
+
+ Only one LogStore at a time can have a log open: open() takes an exclusive lock on
+ <name>.lock and fails with an IOException while another store, in this process or
+ another, holds it. Two writers would each append at their own end of the log and
+ overwrite each other's records, and recovery could truncate a record the other one is
+ still writing. The lock is on a file of its own because compaction replaces the log
+ with a new file. A Follower only reads, and takes no lock.
+
+ Records are limited to 16 MB and the log to 1 TB, so that offset and length fit in the
+ one long the index keeps per key.
+ */
+public class LogStore implements Closeable {
+
+    /*
+     When appended records are forced to disk:
+
+        NONE      never by the store; the OS writes them back when it likes. A crash of
+                  the machine (not just the process) can lose recent updates.
+        PERIODIC  a background thread forces the log every syncIntervalMillis. Updates
+                  return at once; at most about one interval of them can be lost.
+        GROUP     an update returns once it is on disk. A background thread forces the
+                  log for all the updates waiting at that moment, so concurrent writers
+                  share one fsync between them (group commit).
+        ALWAYS    every update forces the log before returning, one fsync each.
+
+     If the background thread fails to force the log, updates waiting for it and every
+     later update throw an IOException with that failure as the cause.
+     */
+    public enum SyncPolicy {NONE, PERIODIC, GROUP, ALWAYS}
+
+    public static final String HINT_SUFFIX = ".hint";
+    public static final String LOCK_SUFFIX = ".lock";
+
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final int LOG_MAGIC = 0x4B564C47;
+    private static final int HINT_MAGIC = 0x4B564854;
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER = 16;
+    private static final int RECORD_HEADER = 12;
+    private static final int TOMBSTONE = -1;
+    private static final int SIZE_BITS = 24;
+    private static final int MAX_RECORD = (1 << SIZE_BITS) - 1;
+    private static final long MAX_LOG = 1L << (64 - SIZE_BITS);
+
+    private final Path logPath;
+    private final Path hintPath;
+    private final Path compactPath;
+    private final Path compactHintPath;
+    private final Path lockPath;
+    private final LogStoreOptions options;
+
+    // held from open to close, so that no other LogStore writes the same log
+    private FileChannel lockFile;
+
+    // the write lock is held to append and to swap in a compacted log
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private long generation;
+    private HashMap<String, Long> index;
+    private long end;
+    private long garbage;
+    private volatile boolean closed;
+
+    // records are numbered as they are appended; durable is the last one known to be on disk
+    private final ReentrantLock syncLock = new ReentrantLock();
+    private final Condition pending = syncLock.newCondition();
+    private final Condition synced = syncLock.newCondition();
+    private long written;
+    private long durable;
+    // why the sync thread stopped, if it failed; every later write fails with it
+    private IOException syncFailure;
+    private final Thread syncer;
+
+    private final ReentrantLock compactLock = new ReentrantLock();
+    private final ExecutorService compactor;
+    private volatile boolean compacting;
+
+    private LogStore(Path logPath, LogStoreOptions options) {
+        this.logPath = logPath;
+        this.hintPath = logPath.resolveSibling(logPath.getFileName() + HINT_SUFFIX);
+        this.compactPath = logPath.resolveSibling(logPath.getFileName() + COMPACT_SUFFIX);
+        this.compactHintPath = hintPath.resolveSibling(hintPath.getFileName() + COMPACT_SUFFIX);
+        this.lockPath = logPath.resolveSibling(logPath.getFileName() + LOCK_SUFFIX);
+        this.options = options;
+        SyncPolicy policy = options.syncPolicy();
+        this.syncer = policy == SyncPolicy.GROUP || policy == SyncPolicy.PERIODIC
+                ? new Thread(this::syncLoop, "log-store-sync") : null;
+        this.compactor = options.backgroundCompaction() ? Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "log-store-compact");
+            t.setDaemon(true);
+            return t;
+        }) : null;
+    }
+
+    public static LogStore open(Path logPath) throws IOException {
+        return open(logPath, LogStoreOptions.defaults());
+    }
+
+    /* Opens the store, creating the log if there is none and recovering it after a crash. */
+    public static LogStore open(Path logPath, LogStoreOptions options) throws IOException {
+        LogStore store = new LogStore(logPath, options);
+        store.recover();
+        if (store.syncer != null) {
+            store.syncer.setDaemon(true);
+            store.syncer.start();
+        }
+        return store;
+    }
+
+    private void recover() throws IOException {
+        lockFile = lockExclusively(lockPath);
+        try {
+            // only now: another store could have been compacting into these
+            Files.deleteIfExists(compactPath);
+            Files.deleteIfExists(compactHintPath);
+            channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        } catch (IOException | RuntimeException e) {
+            lockFile.close();
+            throw e;
+        }
+        try {
+            long size = channel.size();
+            if (size < LOG_HEADER) {
+                // new, or the process died before the header was complete
+                generation = 1;
+                channel.truncate(0);
+                writeFully(channel, logHeader(generation), 0);
+                channel.force(true);
+                size = LOG_HEADER;
+            } else {
+                ByteBuffer header = readFully(channel, 0, LOG_HEADER);
+                if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException(logPath + " is not a log store");
+                }
+                generation = header.getLong(8);
+            }
+
+            index = new HashMap<>();
+            long from = loadHint(size);
+            Replay replay = replay(channel, from, size, index);
+            end = replay.end;
+            garbage = replay.garbage;
+            if (end < size) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            lockFile.close();
+            throw e;
+        }
+    }
+
+    /* Opens and locks the lock file; fails if another LogStore holds it. */
+    private static FileChannel lockExclusively(Path lockPath) throws IOException {
+        FileChannel file = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = file.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // held by another LogStore in this JVM
+            lock = null;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+        if (lock == null) {
+            file.close();
+            throw new IOException(lockPath + " is locked: the log is open in another LogStore");
+        }
+        return file;
+    }
+
+    /* Fills the index from the hint file and returns where the log has to be read from. */
+    private long loadHint(long logSize) {
+        if (!Files.exists(hintPath)) {
+            return LOG_HEADER;
+        }
+        // mapped and checked in one go: much faster than a stream for millions of entries
+        try (FileChannel file = FileChannel.open(hintPath, StandardOpenOption.READ)) {
+            long size = file.size();
+            if (size < 32 || size > Integer.MAX_VALUE) {
+                return LOG_HEADER;
+            }
+            ByteBuffer hint = file.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32 crc = new CRC32();
+            crc.update(hint.duplicate().limit((int) size - 4));
+            if (hint.getInt((int) size - 4) != (int) crc.getValue()
+                    || hint.getInt() != HINT_MAGIC || hint.getInt() != VERSION || hint.getLong() != generation) {
+                return LOG_HEADER;
+            }
+            long covered = hint.getLong();
+            int count = hint.getInt();
+            if (covered < LOG_HEADER || covered > logSize || count < 0) {
+                return LOG_HEADER;
+            }
+            HashMap<String, Long> hinted = new HashMap<>(count * 4 / 3 + 1);
+            byte[] key = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = hint.getInt();
+                if (key.length < length) {
+                    key = new byte[length];
+                }
+                hint.get(key, 0, length);
+                hinted.put(new String(key, 0, length, StandardCharsets.UTF_8), hint.getLong());
+            }
+            index = hinted;
+            return covered;
+        } catch (IOException | RuntimeException e) {
+            // a damaged hint only costs a full read of the log
+            return LOG_HEADER;
+        }
+    }
+
+    public String get(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            Long entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            ByteBuffer record = readFully(channel, offsetOf(entry), sizeOf(entry));
+            int keyLength = record.getInt(4);
+            int valueLength = record.getInt(8);
+            return new String(record.array(), RECORD_HEADER + keyLength, valueLength, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean containsKey(String key) throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return index.containsKey(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String key, String value) throws IOException {
+        if (value == null) {
+            throw new NullPointerException("value");
+        }
+        append(key, encode(key, value));
+    }
+
+    /* Removes the key; returns false, and writes nothing, if it wasn't there. */
+    public boolean remove(String key) throws IOException {
+        if (!containsKey(key)) {
+            return false;
+        }
+        return append(key, encode(key, null));
+    }
+
+    public int size() throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Set<String> keys() throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            return new HashSet<>(index.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Bytes in the log, header included. */
+    public long logSize() {
+        lock.readLock().lock();
+        try {
+            return end;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Bytes in the log taken by overwritten or removed records and by tombstones. */
+    public long garbageBytes() {
+        lock.readLock().lock();
+        try {
+            return garbage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* Forces everything appended so far to disk, whatever the sync policy. */
+    public void sync() throws IOException {
+        lock.readLock().lock();
+        try {
+            ensureOpen();
+            long target = writtenSoFar();
+            channel.force(false);
+            markDurable(target);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean append(String key, byte[] record) throws IOException {
+        long sequence = 0;
+        boolean removed = true;
+        lock.writeLock().lock();
+        try {
+            ensureOpen();
+            checkSynced();
+            if (end + record.length > MAX_LOG) {
+                throw new IOException("log is full: " + end + " bytes");
+            }
+            boolean tombstone = ByteBuffer.wrap(record).getInt(8) == TOMBSTONE;
+            if (tombstone && !index.containsKey(key)) {
+                // removed by someone else since containsKey was checked
+                removed = false;
+            } else {
+                writeFully(channel, ByteBuffer.wrap(record), end);
+                garbage += apply(index, key, tombstone, end, record.length);
+                end += record.length;
+                syncLock.lock();
+                try {
+                    sequence = ++written;
+                    pending.signal();
+                } finally {
+                    syncLock.unlock();
+                }
+                if (options.syncPolicy() == SyncPolicy.ALWAYS) {
+                    channel.force(false);
+                    markDurable(sequence);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (sequence > 0 && options.syncPolicy() == SyncPolicy.GROUP) {
+            awaitDurable(sequence);
+        }
+        maybeCompact();
+        return removed;
+    }
+
+    private void maybeCompact() {
+        if (compactor == null || compacting) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            if (closed || garbage < options.compactionMinGarbage()
+                    || garbage < options.compactionRatio() * (end - LOG_HEADER)) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        compacting = true;
+        try {
+            compactor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException e) {
+                    System.err.println("Background compaction of " + logPath + " failed: " + e);
+                } finally {
+                    compacting = false;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // close() has shut the compactor down; the update itself is already in the log
+            compacting = false;
+        }
+    }
+
+    /*
+     Copies the live records into a new log and swaps it in. Only the copying of the
+     records appended meanwhile, and the swap itself, hold up other threads.
+     */
+    public void compact() throws IOException {
+        compactLock.lock();
+        try {
+            Map<String, Long> snapshot;
+            long snapshotEnd;
+            FileChannel old;
+            lock.writeLock().lock();
+            try {
+                ensureOpen();
+                snapshot = new HashMap<>(index);
+                snapshotEnd = end;
+                old = channel;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            long newGeneration = generation + 1;
+            FileChannel out = FileChannel.open(compactPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                HashMap<String, Long> fresh = new HashMap<>(snapshot.size() * 4 / 3 + 1);
+                long covered = copyLive(old, snapshot, out, fresh, newGeneration);
+                writeHint(compactHintPath, newGeneration, covered, fresh);
+
+                lock.writeLock().lock();
+                try {
+                    ensureOpen();
+                    // whatever was appended during the copy goes across as it is
+                    long tail = end - snapshotEnd;
+                    long copied = 0;
+                    while (copied < tail) {
+                        copied += old.transferTo(snapshotEnd + copied, tail - copied, out.position(covered + copied));
+                    }
+                    Replay replay = replay(out, covered, covered + tail, fresh);
+                    out.force(true);
+                    Files.move(compactHintPath, hintPath, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                    Files.move(compactPath, logPath, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+
+                    old.close();
+                    channel = out;
+                    generation = newGeneration;
+                    index = fresh;
+                    end = replay.end;
+                    garbage = replay.garbage;
+                    markDurable(writtenSoFar());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (IOException | RuntimeException e) {
+                out.close();
+                Files.deleteIfExists(compactPath);
+                Files.deleteIfExists(compactHintPath);
+                throw e;
+            }
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    /* Copies the records in snapshot, in log order, and returns where the new log ends. */
+    private static long copyLive(FileChannel old, Map<String, Long> snapshot, FileChannel out,
+                                 Map<String, Long> fresh, long generation) throws IOException {
+        List<Map.Entry<String, Long>> live = new ArrayList<>(snapshot.entrySet());
+        live.sort(Map.Entry.comparingByValue());
+        long position = LOG_HEADER;
+        DataOutputStream writer = new DataOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(out.position(0)), 1 << 16));
+        writer.write(logHeader(generation).array());
+
+        // read the old log through a window, since the records come in offset order
+        ByteBuffer window = ByteBuffer.allocate(1 << 20);
+        long windowStart = 0;
+        window.limit(0);
+        for (Map.Entry<String, Long> e : live) {
+            long offset = offsetOf(e.getValue());
+            int size = sizeOf(e.getValue());
+            if (offset < windowStart || offset + size > windowStart + window.limit()) {
+                if (size > window.capacity()) {
+                    window = ByteBuffer.allocate(size);
+                }
+                window.clear();
+                windowStart = offset;
+                while (window.hasRemaining() && old.read(window, windowStart + window.position()) > 0) {
+                }
+                window.flip();
+                if (window.limit() < size) {
+                    throw new EOFException("log ends inside a live record at " + offset);
+                }
+            }
+            writer.write(window.array(), (int) (offset - windowStart), size);
+            fresh.put(e.getKey(), pack(position, size));
+            position += size;
+        }
+        writer.flush();
+        return position;
+    }
+
+    private static void writeHint(Path path, long generation, long covered, Map<String, Long> entries)
+            throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new java.util.zip.CheckedOutputStream(Files.newOutputStream(path), crc), 1 << 16))) {
+            out.writeInt(HINT_MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            out.writeLong(covered);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Long> e : entries.entrySet()) {
+                byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeLong(e.getValue());
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+        try (FileChannel hint = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            hint.force(true);
+        }
+    }
+
+    /*
+     Waits for compaction to finish, forces the log and closes it. Updates still waiting
+     for GROUP commit return normally, since they are on disk by then.
+     */
+    @Override
+    public void close() throws IOException {
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for compaction");
+            }
+        }
+        compactLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    channel.force(true);
+                    markDurable(writtenSoFar());
+                } finally {
+                    try {
+                        channel.close();
+                    } finally {
+                        // releases the lock
+                        lockFile.close();
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            compactLock.unlock();
+        }
+        if (syncer != null) {
+            syncLock.lock();
+            try {
+                pending.signal();
+            } finally {
+                syncLock.unlock();
+            }
+        }
+    }
+
+    // GROUP and PERIODIC: force the log whenever there are records that aren't on disk
+    private void syncLoop() {
+        boolean periodic = options.syncPolicy() == SyncPolicy.PERIODIC;
+        try {
+            while (true) {
+                syncLock.lock();
+                try {
+                    while (durable == written && !closed) {
+                        pending.await();
+                    }
+                } finally {
+                    syncLock.unlock();
+                }
+                if (closed) {
+                    return;
+                }
+                if (periodic) {
+                    Thread.sleep(options.syncIntervalMillis());
+                }
+                long target;
+                FileChannel current;
+                lock.readLock().lock();
+                try {
+                    // records are counted in written only once they are in the channel
+                    target = writtenSoFar();
+                    current = channel;
+                } finally {
+                    lock.readLock().unlock();
+                }
+                try {
+                    current.force(false);
+                } catch (ClosedChannelException e) {
+                    // swapped by compaction or closed; both force everything first
+                }
+                markDurable(target);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            syncFailed(new InterruptedIOException("the sync thread was interrupted"));
+        } catch (IOException e) {
+            System.err.println("Syncing " + logPath + " failed: " + e);
+            syncFailed(e);
+        }
+    }
+
+    // Nothing will be synced any more: wake the writers waiting for it, to fail.
+    private void syncFailed(IOException e) {
+        syncLock.lock();
+        try {
+            syncFailure = e;
+            synced.signalAll();
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void checkSynced() throws IOException {
+        syncLock.lock();
+        try {
+            if (syncFailure != null) {
+                throw new IOException("syncing " + logPath + " failed", syncFailure);
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private long writtenSoFar() {
+        syncLock.lock();
+        try {
+            return written;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void markDurable(long sequence) {
+        syncLock.lock();
+        try {
+            if (sequence > durable) {
+                durable = sequence;
+                synced.signalAll();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void awaitDurable(long sequence) throws IOException {
+        syncLock.lock();
+        try {
+            while (durable < sequence) {
+                if (syncFailure != null) {
+                    throw new IOException("syncing " + logPath + " failed", syncFailure);
+                }
+                synced.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for the log to be synced");
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("log store is closed");
+        }
+    }
+
+    /*
+     Follows a log that a LogStore - in this process or another - is writing, keeping a
+     plain map of its values up to date. Each update() reads only what was appended
+     since the last one. A record still being written fails its CRC and is left for the
+     next update, so a reader never sees half a value. After a compaction (a new
+     generation) the map is rebuilt from the new log.
+     */
+    static final class Follower {
+
+        private final Path logPath;
+        private long generation = -1;
+        private long position;
+
+        Follower(Path logPath) {
+            this.logPath = logPath;
+        }
+
+        /* Applies the new records to values; returns whether anything changed. */
+        boolean update(Map<String, String> values) throws IOException {
+            if (!Files.exists(logPath)) {
+                return false;
+            }
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                long size = log.size();
+                if (size < LOG_HEADER) {
+                    return false;
+                }
+                ByteBuffer header = readFully(log, 0, LOG_HEADER);
+                if (header.getInt(0) != LOG_MAGIC || header.getInt(4) != VERSION) {
+                    throw new IOException(logPath + " is not a log store");
+                }
+                boolean changed = false;
+                if (header.getLong(8) != generation || size < position) {
+                    generation = header.getLong(8);
+                    position = LOG_HEADER;
+                    changed = !values.isEmpty();
+                    values.clear();
+                }
+                long before = position;
+                position = readRecords(log, position, size, (key, body, keyLength, valueLength, offset, length) -> {
+                    if (valueLength == TOMBSTONE) {
+                        values.remove(key);
+                    } else {
+                        values.put(key, new String(body, keyLength, valueLength, StandardCharsets.UTF_8));
+                    }
+                });
+                return changed || position != before;
+            }
+        }
+    }
+
+    // ---- records ----
+
+    private static final class Replay {
+        long end;
+        long garbage;
+    }
+
+    /*
+     Applies the records in [from, to) to the index. Stops at the first record that is
+     incomplete or damaged; Replay.end says where that was.
+     */
+    private static Replay replay(FileChannel channel, long from, long to, Map<String, Long> index)
+            throws IOException {
+        Replay replay = new Replay();
+        replay.end = readRecords(channel, from, to, (key, body, keyLength, valueLength, offset, size) ->
+                replay.garbage += apply(index, key, valueLength == TOMBSTONE, offset, size));
+        return replay;
+    }
+
+    /* Sees each good record; body holds the key bytes and then the value bytes. */
+    private interface RecordVisitor {
+        void visit(String key, byte[] body, int keyLength, int valueLength, long offset, int size);
+    }
+
+    /*
+     Passes the records in [from, to) to the visitor, up to the first one that is
+     incomplete or damaged, and returns where that one starts (or to).
+     */
+    private static long readRecords(FileChannel channel, long from, long to, RecordVisitor visitor)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(channel.position(from)), 1 << 16));
+        byte[] body = new byte[256];
+        ByteBuffer lengths = ByteBuffer.allocate(8);
+        CRC32 crc = new CRC32();
+        long position = from;
+        while (position + RECORD_HEADER <= to) {
+            int storedCrc = in.readInt();
+            int keyLength = in.readInt();
+            int valueLength = in.readInt();
+            long size = RECORD_HEADER + (long) keyLength + Math.max(valueLength, 0);
+            if (keyLength < 0 || valueLength < TOMBSTONE || size > MAX_RECORD || position + size > to) {
+                break;
+            }
+            int bodyLength = (int) size - RECORD_HEADER;
+            if (body.length < bodyLength) {
+                body = new byte[Math.max(bodyLength, body.length * 2)];
+            }
+            in.readFully(body, 0, bodyLength);
+            crc.reset();
+            crc.update(lengths.putInt(0, keyLength).putInt(4, valueLength).array());
+            crc.update(body, 0, bodyLength);
+            if ((int) crc.getValue() != storedCrc) {
+                break;
+            }
+            String key = new String(body, 0, keyLength, StandardCharsets.UTF_8);
+            visitor.visit(key, body, keyLength, valueLength, position, (int) size);
+            position += size;
+        }
+        return position;
+    }
+
+    /* Updates the index for a record and returns how many bytes of garbage it made. */
+    private static long apply(Map<String, Long> index, String key, boolean tombstone, long offset, int size) {
+        Long old = tombstone ? index.remove(key) : index.put(key, pack(offset, size));
+        long garbage = old == null ? 0 : sizeOf(old);
+        return tombstone ? garbage + size : garbage;
+    }
+
+    private static byte[] encode(String key, String value) {
+        byte[] k = key.getBytes(StandardCharsets.UTF_8);
+        byte[] v = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        long size = RECORD_HEADER + (long) k.length + v.length;
+        if (size > MAX_RECORD) {
+            throw new IllegalArgumentException("record too large: " + size + " bytes");
+        }
+        ByteBuffer record = ByteBuffer.allocate((int) size);
+        record.putInt(0).putInt(k.length).putInt(value == null ? TOMBSTONE : v.length).put(k).put(v);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, record.capacity() - 4);
+        record.putInt(0, (int) crc.getValue());
+        return record.array();
+    }
+
+    private static ByteBuffer logHeader(long generation) {
+        return ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putInt(VERSION).putLong(generation).flip();
+    }
+
+    private static long pack(long offset, int size) {
+        return offset << SIZE_BITS | size;
+    }
+
+    private static long offsetOf(long entry) {
+        return entry >>> SIZE_BITS;
+    }
+
+    private static int sizeOf(long entry) {
+        return (int) (entry & MAX_RECORD);
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, position + buf.position()) < 0) {
+                throw new EOFException("log ends at " + (position + buf.position()));
+            }
+        }
+        return buf;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+}
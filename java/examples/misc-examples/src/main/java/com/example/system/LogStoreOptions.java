@@ -0,0 +1,97 @@
+package com.example.system;
+
+/*
+ How a LogStore writes and cleans up its log:
+
+    syncPolicy            when appended records are forced to disk, see LogStore.SyncPolicy
+    syncIntervalMillis    how often PERIODIC forces the log
+    backgroundCompaction  compact on a background thread once enough of the log is garbage
+    compactionMinGarbage  ... but never for less than this many garbage bytes
+    compactionRatio       ... and only when garbage is at least this fraction of the log
+
+ Garbage is the space taken by records that have been overwritten or deleted, and by
+ the tombstones of deleted keys.
+
+ Immutable; the with-methods return a modified copy.
+ */
+public final class LogStoreOptions {
+
+    private static final LogStoreOptions DEFAULTS =
+            new LogStoreOptions(LogStore.SyncPolicy.GROUP, 1000, true, 4 << 20, 0.5);
+
+    private final LogStore.SyncPolicy syncPolicy;
+    private final long syncIntervalMillis;
+    private final boolean backgroundCompaction;
+    private final long compactionMinGarbage;
+    private final double compactionRatio;
+
+    private LogStoreOptions(LogStore.SyncPolicy syncPolicy, long syncIntervalMillis, boolean backgroundCompaction,
+                            long compactionMinGarbage, double compactionRatio) {
+        if (syncPolicy == null) {
+            throw new NullPointerException("syncPolicy");
+        }
+        if (syncIntervalMillis < 1) {
+            throw new IllegalArgumentException("syncIntervalMillis must be positive: " + syncIntervalMillis);
+        }
+        if (compactionMinGarbage < 0) {
+            throw new IllegalArgumentException("compactionMinGarbage must not be negative: " + compactionMinGarbage);
+        }
+        if (!(compactionRatio > 0 && compactionRatio <= 1)) {
+            throw new IllegalArgumentException("compactionRatio must be in (0, 1]: " + compactionRatio);
+        }
+        this.syncPolicy = syncPolicy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.backgroundCompaction = backgroundCompaction;
+        this.compactionMinGarbage = compactionMinGarbage;
+        this.compactionRatio = compactionRatio;
+    }
+
+    public static LogStoreOptions defaults() {
+        return DEFAULTS;
+    }
+
+    public LogStoreOptions withSyncPolicy(LogStore.SyncPolicy syncPolicy) {
+        return new LogStoreOptions(syncPolicy, syncIntervalMillis, backgroundCompaction, compactionMinGarbage,
+                compactionRatio);
+    }
+
+    public LogStoreOptions withSyncIntervalMillis(long syncIntervalMillis) {
+        return new LogStoreOptions(syncPolicy, syncIntervalMillis, backgroundCompaction, compactionMinGarbage,
+                compactionRatio);
+    }
+
+    public LogStoreOptions withBackgroundCompaction(boolean backgroundCompaction) {
+        return new LogStoreOptions(syncPolicy, syncIntervalMillis, backgroundCompaction, compactionMinGarbage,
+                compactionRatio);
+    }
+
+    public LogStoreOptions withCompactionMinGarbage(long compactionMinGarbage) {
+        return new LogStoreOptions(syncPolicy, syncIntervalMillis, backgroundCompaction, compactionMinGarbage,
+                compactionRatio);
+    }
+
+    public LogStoreOptions withCompactionRatio(double compactionRatio) {
+        return new LogStoreOptions(syncPolicy, syncIntervalMillis, backgroundCompaction, compactionMinGarbage,
+                compactionRatio);
+    }
+
+    public LogStore.SyncPolicy syncPolicy() {
+        return syncPolicy;
+    }
+
+    public long syncIntervalMillis() {
+        return syncIntervalMillis;
+    }
+
+    public boolean backgroundCompaction() {
+        return backgroundCompaction;
+    }
+
+    public long compactionMinGarbage() {
+        return compactionMinGarbage;
+    }
+
+    public double compactionRatio() {
+        return compactionRatio;
+    }
+}
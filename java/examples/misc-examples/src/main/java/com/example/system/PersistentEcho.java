@@ -1,9 +1,8 @@
 package com.example.system;
-import java.util.Map;
-import java.util.Properties;
-import  java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
 
 /* Question:
 
@@ -13,6 +12,11 @@ Write an application, PersistentEcho, with the following features:
 * If PersistentEcho is run with no command line arguments, it looks for an environment variable called PERSISTENTECHO. If that variable exists, PersistentEcho prints out its value, and also saves the value in the same way it does for command line arguments.
 * If PersistentEcho is run with no command line arguments, and the PERSISTENTECHO environment variable is not defined, it retrieves the property value from PersistentEcho.txt and prints that out.
 
+ The value is kept in a LogStore (PersistentEcho.log) rather than rewriting a properties
+ file each time: saving appends one record, however many keys the store holds.
+
+ PersistentEcho --watch keeps running and prints the value again whenever another run
+ saves a new one, reading it through a LiveConfig.
  */
 public class PersistentEcho {
 
@@ -20,39 +24,35 @@ public class PersistentEcho {
 
     public static void main(String[] args) {
         String toEcho = null;
-        String propFilename = "PersistentEcho.txt";
-        String locationFrom = null;
-
-        Properties props = new Properties();
+        Path storeFile = Paths.get("PersistentEcho.log");
 
         Map<String, String> env = System.getenv();
 
-        try {
+        if (args.length == 1 && args[0].equals("--watch")) {
+            try {
+                watch(storeFile);
+            } catch (Exception e) {
+                System.out.println("Error; " + e.getMessage());
+            }
+            return;
+        }
+
+        try (LogStore store = LogStore.open(storeFile)) {
 
             if(args.length > 0) {
-                for (String arg: args) {
-                    toEcho += arg + " ";
-                }
-                toEcho = toEcho.trim();
-                locationFrom = "cmdline";
+                toEcho = String.join(" ", args).trim();
             } else if(env.containsKey(PROPKEY)) {
                 toEcho = env.get(PROPKEY);
-                locationFrom = "environment";
             }
 
             if(toEcho != null) {
-                //save to props file
-                FileWriter writer = new FileWriter(propFilename);
-                props.setProperty(PROPKEY, toEcho);
-                props.store(writer, "saved from " + locationFrom);
+                //save to the store
+                store.put(PROPKEY, toEcho);
             }
 
             if (toEcho == null) {
-                //get from properties file
-                FileReader reader = new FileReader(propFilename);
-                props.load(reader);
-                reader.close();
-                toEcho = props.getProperty(PROPKEY);
+                //get from the store
+                toEcho = store.get(PROPKEY);
             }
 
             if(toEcho != null) {
@@ -64,4 +64,13 @@ public class PersistentEcho {
         }
     }
 
+    private static void watch(Path storeFile) throws IOException, InterruptedException {
+        try (LiveConfig config = LiveConfig.open(storeFile)) {
+            config.addListener(snapshot -> System.out.println(snapshot.get(PROPKEY)));
+            System.out.println(config.get(PROPKEY));
+            // until the process is stopped
+            Thread.currentThread().join();
+        }
+    }
+
 }
@@ -0,0 +1,60 @@
+package com.example.collections;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+public class CaseInsensitiveSetTest extends TestCase {
+
+    public void testKeepsFirstSpelling() {
+        CaseInsensitiveSet set = new CaseInsensitiveSet();
+        assertTrue(set.add("Word"));
+        assertFalse(set.add("WORD"));
+        assertFalse(set.add("word"));
+        assertTrue(set.add("stra\u00dfe"));
+        assertFalse(set.add("STRA\u00dfE"));
+        assertEquals(2, set.size());
+        assertEquals("Word", set.get("wOrD"));
+        assertTrue(set.contains("STRA\u00dfE"));
+        assertFalse(set.contains("words"));
+    }
+
+    public void testAgreesWithTreeSetIgnoringCase() {
+        Random random = new Random(7);
+        TreeSet<String> expected = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        CaseInsensitiveSet set = new CaseInsensitiveSet();
+        String letters = "aAbBcC\u00e9\u00c9\u03a3\u03c3\u03c2";
+        for (int i = 0; i < 50_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                sb.append(letters.charAt(random.nextInt(letters.length())));
+            }
+            String word = sb.toString();
+            if (random.nextInt(3) == 0) {
+                assertEquals(word, expected.remove(word), set.remove(word));
+            } else {
+                assertEquals(word, expected.add(word), set.add(word));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (String word : expected) {
+            assertEquals(word, set.get(word));
+        }
+        assertEquals(new ArrayList<>(expected), set.sorted());
+
+        List<String> removed = new ArrayList<>();
+        for (Iterator<String> it = set.iterator(); it.hasNext(); ) {
+            String word = it.next();
+            if (random.nextBoolean()) {
+                it.remove();
+                removed.add(word);
+            }
+        }
+        expected.removeAll(removed);
+        assertEquals(new ArrayList<>(expected), set.sorted());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.collections;
+
+import junit.framework.TestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class HeavyHittersTest extends TestCase {
+
+    private static final int K = 20;
+
+    public void testBoundsHoldAndFrequentWordsAreFound() {
+        Map<String, Long> exact = new HashMap<>();
+        HeavyHitters hitters = new HeavyHitters(K, 256, 4);
+        Random random = new Random(11);
+        for (int i = 0; i < 200_000; i++) {
+            String word = zipfWord(random);
+            exact.merge(word, 1L, Long::sum);
+            hitters.add(word);
+        }
+        assertEquals(200_000, hitters.total());
+        checkBounds(hitters, exact);
+        for (Map.Entry<String, Long> e : exact.entrySet()) {
+            assertTrue(e.getKey() + " must be estimated high enough", hitters.estimate(e.getKey()) >= e.getValue());
+            if (e.getValue() > hitters.total() / K) {
+                assertTrue(e.getKey() + " occurs " + e.getValue() + " times", contains(hitters, e.getKey()));
+            }
+        }
+        assertEquals("w0", hitters.top().get(0).word());
+    }
+
+    public void testMergedPartialsKeepTheBounds() {
+        Map<String, Long> exact = new HashMap<>();
+        HeavyHitters[] partials = new HeavyHitters[4];
+        for (int p = 0; p < partials.length; p++) {
+            partials[p] = new HeavyHitters(K, 256, 4);
+        }
+        Random random = new Random(12);
+        for (int i = 0; i < 200_000; i++) {
+            String word = zipfWord(random);
+            exact.merge(word, 1L, Long::sum);
+            partials[random.nextInt(partials.length)].add(word);
+        }
+        HeavyHitters merged = new HeavyHitters(K, 256, 4);
+        for (HeavyHitters p : partials) {
+            merged.merge(p.copy());
+        }
+        assertEquals(200_000, merged.total());
+        checkBounds(merged, exact);
+        assertEquals("w0", merged.top().get(0).word());
+        assertEquals("w1", merged.top().get(1).word());
+
+        try {
+            merged.merge(new HeavyHitters(K + 1, 256, 4));
+            fail("merged summaries of different k");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void checkBounds(HeavyHitters hitters, Map<String, Long> exact) {
+        assertEquals(K, hitters.top().size());
+        for (HeavyHitters.Entry e : hitters.top()) {
+            long truth = exact.getOrDefault(e.word(), 0L);
+            assertTrue(e + " vs " + truth, e.guaranteed() <= truth && truth <= e.count());
+        }
+    }
+
+    private static boolean contains(HeavyHitters hitters, String word) {
+        for (HeavyHitters.Entry e : hitters.top()) {
+            if (e.word().equals(word)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // roughly Zipf: word i has weight 1 / (i + 1) over 10,000 words
+    private static String zipfWord(Random random) {
+        return "w" + (int) Math.floor(Math.exp(random.nextDouble() * Math.log(10_001)) - 1);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.collections;
+
+import junit.framework.TestCase;
+
+import java.nio.charset.StandardCharsets;
+
+public class HyperLogLogTest extends TestCase {
+
+    public void testEstimateIsWithinTheErrorBound() {
+        assertEquals(0, new HyperLogLog().cardinality());
+        for (int n : new int[] { 10, 1_000, 200_000 }) {
+            HyperLogLog sketch = new HyperLogLog();
+            for (int repeat = 0; repeat < 3; repeat++) {
+                for (int i = 0; i < n; i++) {
+                    sketch.add("word" + i);
+                }
+            }
+            double error = Math.abs(sketch.cardinality() - n) / (double) n;
+            assertTrue(n + " words estimated as " + sketch.cardinality(), error < 4 * sketch.standardError());
+        }
+    }
+
+    public void testMergeIsTheSketchOfTheUnion() {
+        HyperLogLog a = new HyperLogLog(10);
+        HyperLogLog b = new HyperLogLog(10);
+        HyperLogLog both = new HyperLogLog(10);
+        for (int i = 0; i < 50_000; i++) {
+            (i % 3 == 0 ? a : b).add("w" + i);
+            both.add("w" + i);
+        }
+        assertEquals(both, a.merge(b));
+        assertEquals(both, HyperLogLog.fromByteArray(both.toByteArray()));
+
+        try {
+            a.merge(new HyperLogLog(11));
+            fail("merged sketches of different precision");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testStringsHashLikeTheirUtf8Bytes() {
+        for (String s : new String[] { "", "plain", "caf\u00e9", "\u65e5\u672c" }) {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            assertEquals(s, HyperLogLog.hash(utf8, 0, utf8.length), HyperLogLog.hash(s));
+        }
+    }
+}
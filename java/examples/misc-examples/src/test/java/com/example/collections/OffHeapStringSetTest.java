@@ -0,0 +1,46 @@
+package com.example.collections;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class OffHeapStringSetTest extends TestCase {
+
+    public void testAgreesWithLinkedHashSetThroughResizes() {
+        Set<String> expected = new LinkedHashSet<>();
+        OffHeapStringSet set = new OffHeapStringSet();
+        Random random = new Random(5);
+        for (int i = 0; i < 300_000; i++) {
+            String word = "w" + random.nextInt(200_000) + (i % 7 == 0 ? "\u00e9\u65e5" : "");
+            assertEquals(word, expected.add(word), set.add(word));
+            if (i % 1000 == 0) {
+                // also while a resize is still moving keys across
+                assertTrue(set.contains(word));
+                assertFalse(set.contains(word + "x"));
+            }
+        }
+        assertEquals(expected.size(), set.count());
+        assertEquals(new ArrayList<>(expected), new ArrayList<>(set));
+    }
+
+    public void testAddAllAndLongKeys() {
+        OffHeapStringSet a = new OffHeapStringSet();
+        OffHeapStringSet b = new OffHeapStringSet();
+        StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            longKey.append((char) ('a' + i % 26));
+        }
+        a.add("one");
+        a.add(longKey.toString());
+        b.add("two");
+        b.add("one");
+        a.addAll(b);
+        assertEquals(3, a.size());
+        assertTrue(a.contains(longKey.toString()));
+        assertFalse(a.contains(longKey.substring(1)));
+        assertEquals("[one, " + longKey + ", two]", new ArrayList<>(a).toString());
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.concurrency.pipeline;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class PipelineTest extends TestCase {
+
+    private static List<Integer> numbers(int n) {
+        return IntStream.range(0, n).boxed().collect(Collectors.toList());
+    }
+
+    public void testSingleThreadedStagesKeepOrder() throws InterruptedException {
+        List<Integer> out = new ArrayList<>();
+        PipelineJob job = Pipeline.from("numbers", numbers(10_000))
+                .map("double", i -> i * 2)
+                .map("inc", i -> i + 1, StageOptions.cheap())
+                .to("collect", out::add);
+        job.run();
+        assertEquals(3, job.segmentCount());
+        assertEquals(10_000, out.size());
+        for (int i = 0; i < out.size(); i++) {
+            assertEquals(2 * i + 1, out.get(i).intValue());
+        }
+    }
+
+    public void testParallelStageDeliversEveryItemOnce() throws InterruptedException {
+        List<Integer> out = Collections.synchronizedList(new ArrayList<>());
+        Pipeline.from("numbers", numbers(50_000))
+                .map("square", i -> (long) i * i, StageOptions.parallel(4).withQueueCapacity(16))
+                .map("drop odd", x -> x % 2 == 0 ? x : null, StageOptions.cheap())
+                .to("collect", x -> out.add((int) Math.sqrt(x)), StageOptions.parallel(2))
+                .run();
+        Collections.sort(out);
+        List<Integer> even = new ArrayList<>();
+        for (int i = 0; i < 50_000; i += 2) {
+            even.add(i);
+        }
+        assertEquals(even, out);
+    }
+
+    public void testStatsCountItemsInAndOut() throws InterruptedException {
+        PipelineJob job = Pipeline.from("numbers", numbers(100))
+                .map("evens", i -> i % 2 == 0 ? i : null)
+                .to("sink", i -> { });
+        job.run();
+        StageStats evens = job.stats().get(1);
+        assertEquals("evens", evens.name());
+        assertEquals(100, evens.in());
+        assertEquals(50, evens.out());
+        assertEquals(50, job.stats().get(2).in());
+    }
+
+    public void testPrefixCanStartSeveralJobs() throws InterruptedException {
+        Pipeline<Integer> doubled = Pipeline.from("numbers", numbers(1000)).map("double", i -> i * 2);
+        AtomicLong sum = new AtomicLong(), count = new AtomicLong();
+        doubled.to("sum", sum::addAndGet).run();
+        doubled.map("count", i -> i).to("count", i -> count.incrementAndGet()).run();
+        assertEquals(999 * 1000, sum.get());
+        assertEquals(1000, count.get());
+    }
+
+    public void testIteratorSourceCanOnlyBeReadOnce() throws InterruptedException {
+        Pipeline<Integer> p = Pipeline.from("numbers", numbers(10).iterator());
+        p.to("sink", i -> { }).run();
+        try {
+            p.to("sink", i -> { }).run();
+            fail("a second job read the same iterator");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void testJobRunsOnlyOnce() throws InterruptedException {
+        PipelineJob job = Pipeline.from("numbers", numbers(10)).to("sink", i -> { });
+        job.run();
+        try {
+            job.run();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    public void testStageFailureStopsTheJob() throws InterruptedException {
+        RuntimeException boom = new RuntimeException("boom");
+        PipelineJob job = Pipeline.from("endless", endless())
+                .map("fail at 1000", i -> {
+                    if (i == 1000) {
+                        throw boom;
+                    }
+                    return i;
+                }, StageOptions.parallel(3))
+                .to("sink", i -> { }, StageOptions.parallel(2));
+        try {
+            job.run();
+            fail("the failure was not reported");
+        } catch (IllegalStateException expected) {
+            assertSame(boom, expected.getCause());
+        }
+    }
+
+    public void testInterruptCancelsTheJob() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicLong seen = new AtomicLong();
+        PipelineJob job = Pipeline.from("endless", endless())
+                .map("slow", i -> i, StageOptions.parallel(2).withQueueCapacity(4))
+                .to("sink", i -> {
+                    seen.incrementAndGet();
+                    started.countDown();
+                });
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        Thread runner = new Thread(() -> {
+            try {
+                job.run();
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+        });
+        runner.start();
+        started.await();
+        runner.interrupt();
+        runner.join(10_000);
+        assertFalse("run() did not return", runner.isAlive());
+        assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedException);
+
+        // the workers have stopped by the time run() returns
+        long after = seen.get();
+        Thread.sleep(100);
+        assertEquals(after, seen.get());
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            assertFalse(t.getName(), t.getName().startsWith("pipeline-endless") && t.isAlive());
+        }
+    }
+
+    private static Iterator<Integer> endless() {
+        return new Iterator<Integer>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Integer next() {
+                return next++;
+            }
+        };
+    }
+
+    public void testEmptySource() throws InterruptedException {
+        List<Object> out = new ArrayList<>();
+        Pipeline.from("empty", Arrays.asList()).map("id", x -> x, StageOptions.parallel(3)).to("collect", out::add).run();
+        assertTrue(out.isEmpty());
+    }
+}
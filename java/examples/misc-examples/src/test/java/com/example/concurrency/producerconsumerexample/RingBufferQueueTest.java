@@ -0,0 +1,118 @@
+package com.example.concurrency.producerconsumerexample;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RingBufferQueueTest extends TestCase {
+
+    public void testCapacityRoundsUpToPowerOfTwo() {
+        assertEquals(1, new SpscRingBufferQueue<String>(1).capacity());
+        assertEquals(8, new SpscRingBufferQueue<String>(5).capacity());
+        assertEquals(16, new MpmcRingBufferQueue<String>(16).capacity());
+    }
+
+    public void testOfferFailsWhenFull() {
+        RingBufferQueue<String> q = new MpmcRingBufferQueue<>(2);
+        assertTrue(q.offer("a"));
+        assertTrue(q.offer("b"));
+        assertFalse(q.offer("c"));
+        assertEquals(2, q.size());
+        assertEquals("a", q.peek());
+        assertEquals("a", q.poll());
+        assertEquals("b", q.poll());
+        assertNull(q.poll());
+        assertTrue(q.isEmpty());
+    }
+
+    public void testDrainToKeepsOrder() {
+        RingBufferQueue<String> q = new SpscRingBufferQueue<>(8);
+        for (int i = 0; i < 5; i++) {
+            q.offer("m" + i);
+        }
+        List<String> out = new ArrayList<>();
+        assertEquals(3, q.drainTo(out, 3));
+        assertEquals("[m0, m1, m2]", out.toString());
+        assertEquals("[m3, m4]", q.toString());
+    }
+
+    public void testOnlyTheHeadCanBeRemoved() {
+        RingBufferQueue<String> q = new MpmcRingBufferQueue<>(8);
+        q.offer("a");
+        q.offer("b");
+        try {
+            q.remove("b");
+            fail("removed an element from the middle");
+        } catch (UnsupportedOperationException expected) {
+        }
+        try {
+            q.removeIf("a"::equals);
+            fail("removed an element by predicate");
+        } catch (UnsupportedOperationException expected) {
+        }
+        assertEquals("[a, b]", q.toString());
+        assertEquals("a", q.remove());
+        q.clear();
+        assertTrue(q.isEmpty());
+    }
+
+    public void testSpscPreservesOrderAcrossThreads() throws InterruptedException {
+        final RingBufferQueue<Integer> q = new SpscRingBufferQueue<>(16);
+        final int n = 200_000;
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < n; i++) {
+                    q.put(i);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        for (int i = 0; i < n; i++) {
+            assertEquals(i, q.take().intValue());
+        }
+        producer.join();
+    }
+
+    public void testMpmcDeliversEveryElementOnce() throws InterruptedException {
+        final RingBufferQueue<Long> q = new MpmcRingBufferQueue<>(64);
+        final int producers = 3;
+        final int perProducer = 50_000;
+        final AtomicLong sum = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (long i = 1; i <= perProducer; i++) {
+                        q.put(i);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (int c = 0; c < producers; c++) {
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < perProducer; i++) {
+                        sum.addAndGet(q.take());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread t : threads) {
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        long expected = producers * ((long) perProducer * (perProducer + 1) / 2);
+        assertEquals(expected, sum.get());
+        assertTrue(q.isEmpty());
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.system;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class LiveConfigTest extends TestCase {
+
+    private Path dir;
+    private Path log;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("liveconfig");
+        log = dir.resolve("config.log");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    public void testReloadFollowsAppendsAndCompaction() throws IOException {
+        LogStoreOptions options = LogStoreOptions.defaults().withBackgroundCompaction(false);
+        try (LogStore store = LogStore.open(log, options); LiveConfig config = LiveConfig.open(log)) {
+            store.put("a", "1");
+            store.put("b", "2");
+            LiveConfig.Snapshot first = config.reload();
+            assertEquals("1", first.get("a"));
+            assertEquals("2", first.get("b"));
+
+            store.put("a", "3");
+            store.remove("b");
+            store.compact();
+            store.put("c", "4");
+            LiveConfig.Snapshot second = config.reload();
+            assertEquals("3", second.get("a"));
+            assertNull(second.get("b"));
+            assertEquals("4", second.get("c"));
+            assertTrue(second.version() > first.version());
+
+            // the old snapshot is unchanged
+            assertEquals("2", first.get("b"));
+        }
+    }
+
+    public void testWatcherPublishesChanges() throws Exception {
+        try (LogStore store = LogStore.open(log); LiveConfig config = LiveConfig.open(log)) {
+            BlockingQueue<LiveConfig.Snapshot> published = new ArrayBlockingQueue<>(100);
+            config.addListener(published::add);
+            store.put("key", "value");
+            LiveConfig.Snapshot snapshot = published.poll(10, TimeUnit.SECONDS);
+            assertNotNull("no reload within 10 s", snapshot);
+            assertEquals("value", snapshot.get("key"));
+            assertEquals("value", config.get("key"));
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.system;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class LogStoreTest extends TestCase {
+
+    private Path dir;
+    private Path log;
+
+    @Override
+    protected void setUp() throws IOException {
+        dir = Files.createTempDirectory("logstore");
+        log = dir.resolve("test.log");
+    }
+
+    @Override
+    protected void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static LogStoreOptions manualCompaction() {
+        return LogStoreOptions.defaults().withBackgroundCompaction(false);
+    }
+
+    public void testValuesSurviveReopen() throws IOException {
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            store.put("a", "1");
+            store.put("b", "2");
+            store.put("a", "3");
+            assertTrue(store.remove("b"));
+            assertFalse(store.remove("b"));
+            store.put("\u00E9t\u00E9", "summer");
+        }
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            assertEquals("3", store.get("a"));
+            assertNull(store.get("b"));
+            assertEquals("summer", store.get("\u00E9t\u00E9"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    public void testTornTailIsTruncated() throws IOException {
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            store.put("kept", "yes");
+            store.put("torn", "this record loses its last bytes");
+        }
+        long size = Files.size(log);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+            // and some junk after it, as a crash in the middle of a write can leave
+            channel.write(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}), size - 3);
+        }
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            assertEquals("yes", store.get("kept"));
+            assertNull(store.get("torn"));
+            store.put("after", "recovery");
+        }
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            assertEquals("recovery", store.get("after"));
+            assertEquals(2, store.size());
+        }
+    }
+
+    public void testCompactionDropsGarbageAndWritesHint() throws IOException {
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            for (int round = 0; round < 10; round++) {
+                for (int i = 0; i < 100; i++) {
+                    store.put("key" + i, "value" + i + "-" + round);
+                }
+            }
+            store.remove("key0");
+            long before = store.logSize();
+            assertTrue(store.garbageBytes() > before / 2);
+
+            store.compact();
+            assertEquals(0, store.garbageBytes());
+            assertTrue(store.logSize() < before / 5);
+            assertEquals("value7-9", store.get("key7"));
+
+            store.put("key7", "after compaction");
+        }
+        assertTrue(Files.exists(log.resolveSibling("test.log" + LogStore.HINT_SUFFIX)));
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            assertEquals(99, store.size());
+            assertNull(store.get("key0"));
+            assertEquals("after compaction", store.get("key7"));
+            assertEquals("value8-9", store.get("key8"));
+        }
+    }
+
+    public void testBackgroundCompactionWhileWriting() throws Exception {
+        LogStoreOptions options = LogStoreOptions.defaults()
+                .withSyncPolicy(LogStore.SyncPolicy.NONE)
+                .withCompactionMinGarbage(4096)
+                .withCompactionRatio(0.5);
+        try (LogStore store = LogStore.open(log, options)) {
+            for (int i = 0; i < 20000; i++) {
+                store.put("key" + (i % 50), "value" + i);
+                if (i % 1000 == 999) {
+                    // on a single core the writes can otherwise finish before the
+                    // compaction thread is ever scheduled
+                    Thread.sleep(1);
+                }
+            }
+            assertTrue(store.logSize() < 20000 * 10);
+        }
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            for (int k = 0; k < 50; k++) {
+                assertEquals("value" + (19950 + k), store.get("key" + k));
+            }
+        }
+    }
+
+    public void testSecondOpenIsRejected() throws IOException {
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            store.put("a", "1");
+            try {
+                LogStore.open(log, manualCompaction());
+                fail("a second store opened the same log");
+            } catch (IOException expected) {
+            }
+            store.put("b", "2");
+        }
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            assertEquals("1", store.get("a"));
+            assertEquals("2", store.get("b"));
+        }
+    }
+
+    public void testCloseWhileUpdatesStartCompaction() throws Exception {
+        LogStoreOptions options = LogStoreOptions.defaults()
+                .withSyncPolicy(LogStore.SyncPolicy.NONE)
+                .withCompactionMinGarbage(256)
+                .withCompactionRatio(0.1);
+        for (int round = 0; round < 100; round++) {
+            LogStore store = LogStore.open(log, options);
+            List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int id = t;
+                Thread writer = new Thread(() -> {
+                    try {
+                        for (int i = 0; ; i++) {
+                            store.put("key" + id, "value" + i);
+                        }
+                    } catch (IOException e) {
+                        // closed under it
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            Thread.sleep(round % 5);
+            store.close();
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(Collections.emptyList(), failures);
+        }
+    }
+
+    public void testGroupCommitWithConcurrentWriters() throws Exception {
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            List<Thread> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int id = t;
+                Thread writer = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++) {
+                            store.put("w" + id + "-" + i, Integer.toString(i));
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                });
+                writers.add(writer);
+                writer.start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            assertEquals(200, store.size());
+        }
+        try (LogStore store = LogStore.open(log, manualCompaction())) {
+            assertEquals("49", store.get("w3-49"));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package BasePart1;
+
+/* Checks DirectorySizeIndex against fresh scans while a tree is changed under it.
+
+Usage: DirectorySizeIndexTest
+
+Each step changes a temporary tree the way a shell would, then waits (up to ten
+seconds) until every directory's size in the index is what DirectorySizeScanner
+finds. Exits with an AssertionError naming the step that never caught up.
+*/
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class DirectorySizeIndexTest {
+
+    interface Step {
+        void run() throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path top = Files.createTempDirectory("dir-size-index");
+        try {
+            Path d = top.resolve("d");
+            Files.createDirectories(d.resolve("e"));
+            write(d.resolve("e/f"), 1000);
+
+            try (DirectorySizeIndex sizes = DirectorySizeIndex.open(top)) {
+                check(sizes, "open", () -> { });
+                check(sizes, "create a file", () -> write(top.resolve("a"), 300));
+                check(sizes, "grow a file", () -> write(d.resolve("e/f"), 700));
+                check(sizes, "mkdir -p", () -> {
+                    Files.createDirectories(d.resolve("x/y/z"));
+                    write(d.resolve("x/y/z/g"), 2000);
+                });
+                check(sizes, "rm -rf a subtree", () -> delete(d.resolve("x")));
+                check(sizes, "rename a directory", () -> Files.move(d.resolve("e"), top.resolve("e2")));
+                check(sizes, "replace a directory", () -> {
+                    // rm -rf d && mkdir d, quickly and often enough that some of them
+                    // land between the watch thread's reads
+                    delete(d);
+                    for (int i = 0; i < 200; i++) {
+                        Files.createDirectory(d);
+                        Files.delete(d);
+                    }
+                    Files.createDirectory(d);
+                    write(d.resolve("new"), 5000);
+                });
+                check(sizes, "write into the replacement", () -> {
+                    Files.createDirectory(d.resolve("sub"));
+                    write(d.resolve("sub/h"), 4000);
+                });
+                check(sizes, "replace it again", () -> {
+                    delete(d);
+                    Files.createDirectories(d.resolve("sub"));
+                    write(d.resolve("sub/h"), 100);
+                });
+            }
+            System.out.println("all steps passed");
+        } finally {
+            delete(top);
+        }
+    }
+
+    private static void check(DirectorySizeIndex sizes, String step, Step change)
+            throws IOException, InterruptedException {
+        change.run();
+        String mismatch = null;
+        for (long end = System.currentTimeMillis() + 10_000; System.currentTimeMillis() < end; ) {
+            mismatch = mismatch(sizes);
+            if (mismatch == null) {
+                System.out.println("ok: " + step);
+                return;
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError(step + ": " + mismatch);
+    }
+
+    // The first directory whose size in the index is not what a scan finds, or null.
+    private static String mismatch(DirectorySizeIndex sizes) throws IOException {
+        DirectorySizeScanner.DirSize scanned = new DirectorySizeScanner().countLinksOnce(false).scan(sizes.root());
+        Deque<DirectorySizeScanner.DirSize> todo = new ArrayDeque<>();
+        todo.add(scanned);
+        int directories = 0;
+        while (!todo.isEmpty()) {
+            DirectorySizeScanner.DirSize dir = todo.poll();
+            directories++;
+            if (sizes.size(dir.path) != dir.bytes || sizes.files(dir.path) != dir.files) {
+                return dir.path + " is " + sizes.size(dir.path) + " bytes in " + sizes.files(dir.path)
+                        + " files, a scan finds " + dir.bytes + " in " + dir.files;
+            }
+            todo.addAll(dir.children);
+        }
+        if (sizes.directories() != directories) {
+            return "the index has " + sizes.directories() + " directories, a scan finds " + directories;
+        }
+        return null;
+    }
+
+    private static void write(Path file, int bytes) throws IOException {
+        Files.write(file, new byte[bytes], StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private static void delete(Path dir) throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(dir)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(paths::add);
+        }
+        for (Path p : paths) {
+            Files.delete(p);
+        }
+    }
+}
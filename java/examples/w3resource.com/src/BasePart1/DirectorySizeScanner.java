@@ -0,0 +1,306 @@
+package BasePart1;
+
+/* FortyFiveSizeOfFile, grown into du: the size of every directory in a tree.
+
+Usage: DirectorySizeScanner [-L] [--max-depth n] [--threads n] [--count-links] dir...
+
+The tree is walked with fork/join: every directory is a task, which lists the
+directory, looks at each entry and forks a task for each subdirectory. Idle
+workers steal subdirectories from busy ones, so a big tree keeps every core busy.
+
+Sizes are apparent sizes in bytes, the same as du -b: files, symlinks and the
+directories themselves. Like du:
+
+* a file with several hard links is counted once, the first time one of its
+  links is seen (with several threads that is not always the same link). Only
+  files with more than one link are remembered, by (device, inode), so memory
+  stays small even for millions of files. --count-links counts every link.
+* symbolic links are not followed unless -L is given. With -L, a directory that
+  has been visited already (a symlink loop, or two links to one directory) is
+  skipped.
+* --max-depth n reports directories down to n levels below the root, but the
+  totals still include everything underneath.
+
+Java has no call that stats a whole directory at once (getdents plus stat), so
+each entry takes one stat. On Unix the "unix" attribute view reads the size,
+mode, link count and inode with a single lstat. Elsewhere the scanner uses
+BasicFileAttributes, and it has to remember every file key.
+*/
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
+
+public class DirectorySizeScanner {
+
+    public enum Symlinks { NEVER_FOLLOW, FOLLOW }
+
+    /* Called with each directory just before it is listed, on the thread listing it. */
+    public interface DirectoryListener {
+        void visit(Path dir) throws IOException;
+    }
+
+    /* A directory and the totals of everything under it. */
+    public static class DirSize {
+        public final Path path;
+        public long bytes;
+        public long files;
+        public long directories;
+        public final List<DirSize> children = new ArrayList<>();
+
+        DirSize(Path path) {
+            this.path = path;
+        }
+
+        void add(DirSize child) {
+            bytes += child.bytes;
+            files += child.files;
+            directories += child.directories;
+        }
+    }
+
+    private static final boolean UNIX = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+    private static final String UNIX_ATTRIBUTES = "unix:size,mode,nlink,ino,dev";
+    private static final int S_IFMT = 0170000, S_IFDIR = 0040000, S_IFLNK = 0120000;
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private Symlinks symlinks = Symlinks.NEVER_FOLLOW;
+    private boolean countLinksOnce = true;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private DirectoryListener onDirectory;
+
+    // file keys of hard-linked files, and of directories when following symlinks
+    private final Set<Object> seen = ConcurrentHashMap.newKeySet();
+    private final LongAdder entries = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    public DirectorySizeScanner maxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    public DirectorySizeScanner symlinks(Symlinks symlinks) {
+        this.symlinks = symlinks;
+        return this;
+    }
+
+    public DirectorySizeScanner countLinksOnce(boolean countLinksOnce) {
+        this.countLinksOnce = countLinksOnce;
+        return this;
+    }
+
+    public DirectorySizeScanner parallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /* DirectorySizeIndex uses this to start watching each directory before reading it,
+       so nothing created while the scan runs is missed. A failure counts as an error. */
+    public DirectorySizeScanner onDirectory(DirectoryListener onDirectory) {
+        this.onDirectory = onDirectory;
+        return this;
+    }
+
+    /* Entries looked at so far, across all scans; readable while a scan runs. */
+    public long entries() {
+        return entries.sum();
+    }
+
+    /* Entries that could not be read. */
+    public long errors() {
+        return errors.sum();
+    }
+
+    public DirSize scan(Path root) throws IOException {
+        Entry top = stat(root, symlinks == Symlinks.FOLLOW);
+        if (!top.directory) {
+            DirSize single = new DirSize(root);
+            single.bytes = top.size;
+            single.files = 1;
+            return single;
+        }
+        if (symlinks == Symlinks.FOLLOW) {
+            seen.add(top.key);
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new ScanTask(root, top.size, 0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /* What the scanner needs to know about one directory entry. */
+    private static class Entry {
+        long size;
+        boolean directory;
+        boolean symlink;
+        long links = 1;
+        Object key;
+    }
+
+    private static Entry stat(Path path, boolean follow) throws IOException {
+        LinkOption[] options = follow ? new LinkOption[0] : new LinkOption[] { LinkOption.NOFOLLOW_LINKS };
+        Entry e = new Entry();
+        if (UNIX) {
+            Map<String, Object> a = Files.readAttributes(path, UNIX_ATTRIBUTES, options);
+            int mode = (Integer) a.get("mode");
+            e.size = (Long) a.get("size");
+            e.directory = (mode & S_IFMT) == S_IFDIR;
+            e.symlink = (mode & S_IFMT) == S_IFLNK;
+            e.links = (Integer) a.get("nlink");
+            e.key = new DevIno((Long) a.get("dev"), (Long) a.get("ino"));
+        } else {
+            BasicFileAttributes a = Files.readAttributes(path, BasicFileAttributes.class, options);
+            e.size = a.size();
+            e.directory = a.isDirectory();
+            e.symlink = a.isSymbolicLink();
+            e.key = a.fileKey();
+            // without a link count, every file might be a hard link
+            e.links = e.key == null ? 1 : 2;
+        }
+        return e;
+    }
+
+    private static final class DevIno {
+        final long dev, ino;
+
+        DevIno(long dev, long ino) {
+            this.dev = dev;
+            this.ino = ino;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof DevIno && ((DevIno) o).dev == dev && ((DevIno) o).ino == ino;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ino * 31 + dev);
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<DirSize> {
+        private static final long serialVersionUID = 1L;
+
+        private final Path dir;
+        private final long ownSize;
+        private final int depth;
+
+        ScanTask(Path dir, long ownSize, int depth) {
+            this.dir = dir;
+            this.ownSize = ownSize;
+            this.depth = depth;
+        }
+
+        @Override
+        protected DirSize compute() {
+            DirSize result = new DirSize(dir);
+            result.bytes = ownSize;
+            result.directories = 1;
+            List<ScanTask> subdirs = new ArrayList<>();
+            boolean follow = symlinks == Symlinks.FOLLOW;
+            if (onDirectory != null) {
+                try {
+                    onDirectory.visit(dir);
+                } catch (IOException ex) {
+                    errors.increment();
+                    System.err.println(dir + ": " + ex);
+                }
+            }
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path child : stream) {
+                    entries.increment();
+                    Entry e;
+                    try {
+                        e = stat(child, follow);
+                    } catch (IOException ex) {
+                        // gone since the listing, or with -L a dangling symlink; du skips those too
+                        errors.increment();
+                        System.err.println("cannot access " + child + ": " + ex.getMessage());
+                        continue;
+                    }
+                    if (e.directory) {
+                        if (!follow || seen.add(e.key)) {
+                            ScanTask task = new ScanTask(child, e.size, depth + 1);
+                            task.fork();
+                            subdirs.add(task);
+                        }
+                    } else if (!countLinksOnce || e.links < 2 || seen.add(e.key)) {
+                        result.bytes += e.size;
+                        result.files++;
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException ex) {
+                errors.increment();
+                System.err.println("cannot read directory " + dir + ": " + ex.getMessage());
+            }
+            // joined in reverse so the most recently forked, still local, tasks run here
+            for (int i = subdirs.size() - 1; i >= 0; i--) {
+                DirSize child = subdirs.get(i).join();
+                result.add(child);
+                if (depth < maxDepth) {
+                    result.children.add(child);
+                }
+            }
+            Collections.reverse(result.children);
+            return result;
+        }
+    }
+
+    /* Prints the tree like du: children before their parent. */
+    public static void print(DirSize node) {
+        for (DirSize child : node.children) {
+            print(child);
+        }
+        System.out.printf("%d\t%s\n", node.bytes, node.path);
+    }
+
+    public static void main(String[] args) throws IOException {
+        DirectorySizeScanner scanner = new DirectorySizeScanner();
+        List<Path> roots = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "-L": scanner.symlinks(Symlinks.FOLLOW); break;
+                case "--count-links": scanner.countLinksOnce(false); break;
+                case "--max-depth": scanner.maxDepth(Integer.parseInt(args[++i])); break;
+                case "--threads": scanner.parallelism(Integer.parseInt(args[++i])); break;
+                default: roots.add(Paths.get(args[i]));
+            }
+        }
+        if (roots.isEmpty()) {
+            roots.add(Paths.get("."));
+        }
+
+        long start = System.nanoTime();
+        for (Path root : roots) {
+            print(scanner.scan(root));
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%,d entries in %.2f s (%,.0f entries/s, %d threads)%s\n",
+                scanner.entries(), seconds, scanner.entries() / seconds, scanner.parallelism,
+                scanner.errors() > 0 ? ", " + scanner.errors() + " errors" : "");
+    }
+}
@@ -5,6 +5,8 @@ package BasePart1;
 
 Note that java doesn't have a concept of a stat().
 
+Given a path as argument it sizes that instead, through DirectorySizeScanner (which
+is du -b in Java): a file is just its size, a directory adds up the whole tree.
 
 
  */
@@ -14,10 +16,24 @@ import java.io.IOException;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 
 public class FortyFiveSizeOfFile {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+
+        if (args.length > 0) {
+            DirectorySizeScanner.DirSize total = null;
+            try {
+                total = new DirectorySizeScanner().maxDepth(0).scan(Paths.get(args[0]));
+            } catch (IOException e) {
+                System.out.println("file does not exist");
+                System.exit(1);
+            }
+            System.out.printf("Size of [%s] is %d (%d files, %d directories)\n",
+                    args[0], total.bytes, total.files, total.directories);
+            return;
+        }
 
         String filename = "hello.txt";
         Path path = FileSystems.getDefault().getPath("src/BasePart1", filename);